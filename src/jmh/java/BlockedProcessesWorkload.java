@@ -0,0 +1,47 @@
+import benchmarks.Workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * One clock cycle of blocked process tracking: advance the clock, waking up
+ * the processes whose I/O completed, then block processes again until the
+ * requested fraction of them is blocked.
+ *
+ * Parameters: number of processes, fraction of them blocked.
+ */
+public class BlockedProcessesWorkload implements Workload {
+    private FairShareScheduler scheduler;
+    private SplittableRandom rng;
+    private int readyTarget;
+
+    @Override
+    public void setUp(String... params) {
+        int processes = Integer.parseInt(params[0]);
+        double blockedFraction = Double.parseDouble(params[1]);
+
+        rng = new SplittableRandom(42);
+        scheduler = new FairShareScheduler();
+        readyTarget = Math.max(1, (int) (processes * (1 - blockedFraction)));
+
+        for(int i = 0; i < processes; i++) {
+            scheduler.addProcess(new ScheduledProcess(i, i % 16, 0, 1, 0.5, 60));
+        }
+
+        blockDownToTarget();
+    }
+
+    @Override
+    public long run() {
+        scheduler.updateBlockedProcesses();
+        blockDownToTarget();
+        return scheduler.getReadyCount();
+    }
+
+    private void blockDownToTarget() {
+        while(scheduler.getReadyCount() > readyTarget) {
+            // same distribution as Cpu's I/O times
+            int delay = (int) (Sim.CLOCK_IO_MIN + Sim.CLOCK_IO_DEV * Math.abs(rng.nextGaussian()));
+            scheduler.blockProcess(scheduler.getNextProcess(), delay);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import benchmarks.Workload;
+
+import java.io.IOException;
+
+/**
+ * A whole silent simulation of several copies of one of the programs in
+ * data/, with a fixed seed. Must be run from the project root.
+ *
+ * Parameters: program name, number of copies.
+ */
+public class InterpreterWorkload implements Workload {
+    private SchedulerProcessConfiguration config;
+
+    @Override
+    public void setUp(String... params) {
+        String program = params[0];
+        int copies = Integer.parseInt(params[1]);
+
+        config = new SchedulerProcessConfiguration();
+        config.setDefaultProcessWeight(0.5);
+        config.setDefaultProcessPriority(60);
+        config.setEventDriven(true);
+
+        for(int i = 0; i < copies; i++) {
+            config.addFile("data/" + program + ".pexe", i % 4);
+        }
+    }
+
+    /**
+     * @return The number of instructions executed.
+     */
+    @Override
+    public long run() throws InterruptedException, IOException {
+        Simulation simulation = new Simulation(config, new SplitMixRandom(42), null);
+        simulation.keepStatistics();
+        simulation.loadPrograms();
+        simulation.run();
+
+        return simulation.getStatistics().getInstructions();
+    }
+}
@@ -0,0 +1,36 @@
+import benchmarks.Workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * One scheduling decision: pick the next process and charge it one cycle of
+ * utilization. Cpu charges a whole slice in one call when the process is
+ * switched out, and that costs the same whatever the slice's length.
+ *
+ * Parameters: number of processes, number of groups, and optionally the
+ * scheduling policy (fair-share by default).
+ */
+public class SchedulerDispatchWorkload implements Workload {
+    private Scheduler scheduler;
+
+    @Override
+    public void setUp(String... params) {
+        int processes = Integer.parseInt(params[0]);
+        int groups = Integer.parseInt(params[1]);
+
+        SplittableRandom rng = new SplittableRandom(42);
+        String policy = params.length > 2 ? params[2] : Scheduler.FAIR_SHARE;
+        scheduler = Scheduler.create(policy, Sim.CLOCK_PER_TIMER, null, new SplitMixRandom(42));
+
+        for(int i = 0; i < processes; i++) {
+            scheduler.addProcess(new ScheduledProcess(i, i % groups, 0, 1, rng.nextDouble(), 60));
+        }
+    }
+
+    @Override
+    public long run() {
+        ScheduledProcess p = scheduler.getNextProcess();
+        scheduler.updateProcessUtilization(p);
+        return p.getId();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated instructions per second for the sample programs in data/.
+ *
+ * Each operation is a whole silent simulation of several copies of one
+ * program, see InterpreterWorkload. The "instructions" counter in the
+ * results is the instruction throughput. Run from the project root so the
+ * programs can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+    @Param({"Comp", "IO", "Mix"})
+    String program;
+
+    @Param({"64"})
+    int copies;
+
+    private Workload workload;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            instructions = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        workload = Workload.create("InterpreterWorkload", program, String.valueOf(copies));
+    }
+
+    @Benchmark
+    public long simulate(Counters counters) throws Exception {
+        long instructions = workload.run();
+        counters.instructions += instructions;
+        return instructions;
+    }
+}
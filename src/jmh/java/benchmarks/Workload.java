@@ -0,0 +1,32 @@
+package benchmarks;
+
+/**
+ * One piece of simulator work to be timed.
+ *
+ * JMH only accepts benchmark classes in a named package, and the simulator
+ * lives in the default package, which a named package cannot import. The
+ * workloads are therefore written in the default package against this
+ * interface, and looked up by name once per trial.
+ */
+public interface Workload {
+    /**
+     * Prepares the workload.
+     *
+     * @param params The benchmark's parameters, in the order the workload
+     *               documents.
+     */
+    void setUp(String... params) throws Exception;
+
+    /**
+     * Does one unit of work.
+     *
+     * @return A value depending on the work done, so it is not optimized away.
+     */
+    long run() throws Exception;
+
+    static Workload create(String className, String... params) throws Exception {
+        Workload workload = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        workload.setUp(params);
+        return workload;
+    }
+}
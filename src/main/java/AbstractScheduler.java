@@ -0,0 +1,458 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * What every scheduling policy has in common: the processes, the clock, the
+ * blocked processes ordered by the cycle their I/O completes on, the decay
+ * interval, and the queue of processes submitted from other threads. A
+ * policy only keeps the ready processes in its own order.
+ *
+ * Submitted processes go into a lock-free queue and are moved into the
+ * scheduler by the dispatching thread the next time it picks a process, so
+ * a producer never waits on the dispatch loop and the dispatch loop never
+ * takes a lock.
+ *
+ * The process picked last is charged for the cycles it ran, through charge,
+ * when it next leaves the CPU: when the next process is picked, or when it
+ * blocks or is removed. A policy that only orders processes at those points
+ * need not touch its queues on every cycle.
+ */
+abstract class AbstractScheduler implements Scheduler {
+    // tickets of a process of weight 1 in a group given the whole CPU
+    private static final int BASE_TICKETS = 1000;
+
+    // lightest weight counted, so no process holds unbounded tickets
+    private static final double MIN_WEIGHT = 0.01;
+
+    private IntHashMap<ScheduledProcess> processes;
+    private ConcurrentLinkedQueue<ScheduledProcess> submissions;
+
+    // processes handed over by other CPUs, their cycles counted back from
+    // the handing CPU's clock until they are admitted
+    private ConcurrentLinkedQueue<ScheduledProcess> handOvers;
+
+    /**
+     * Blocked processes, ordered by the clock cycle their I/O completes on.
+     */
+    private IndexedHeap<ScheduledProcess> blockedProcesses;
+
+    /**
+     * Shares of the groups not given the default share.
+     */
+    private HashMap<Integer, Double> groupShares;
+
+    /**
+     * Number of clock cycles that have elapsed.
+     */
+    private long clock;
+
+    /**
+     * Number of ready processes.
+     */
+    private int readyCount;
+
+    /**
+     * The policy's history decays every decayInterval cycles, or never if it
+     * is 0. Each decay starts a new epoch.
+     */
+    private long decayInterval;
+    private long nextDecay;
+    private int epoch;
+
+    // process picked last, until it is charged, and its CPU cycles then
+    private ScheduledProcess running;
+    private long runningCycles;
+
+    AbstractScheduler() {
+        processes   = new IntHashMap<>();
+        submissions = new ConcurrentLinkedQueue<>();
+        handOvers   = new ConcurrentLinkedQueue<>();
+        blockedProcesses = new IndexedHeap<>(AbstractScheduler::compareWakeCycles);
+        groupShares = new HashMap<>();
+        clock       = 0;
+        nextDecay   = Long.MAX_VALUE;
+    }
+
+    @Override
+    public void setDecayInterval(long decayInterval) {
+        this.decayInterval = decayInterval;
+        this.nextDecay = decayInterval > 0 ? (clock / decayInterval + 1) * decayInterval : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void setGroupShare(int groupId, double share) {
+        groupShares.put(groupId, share);
+    }
+
+    @Override
+    public void addProcess(ScheduledProcess process) {
+        processes.put(process.getId(), process);
+        admit(process);
+
+        if(!process.isBlocked()) {
+            makeReady(process);
+        }
+    }
+
+    @Override
+    public void submitProcess(ScheduledProcess process) {
+        submissions.offer(process);
+    }
+
+    @Override
+    public void handOverProcess(ScheduledProcess process, long clock) {
+        process.rebase(-clock);
+        handOvers.offer(process);
+    }
+
+    @Override
+    public void removeProcess(ScheduledProcess p) {
+        if(p == running) {
+            chargeRunning();
+        }
+
+        processes.remove(p.getId());
+
+        if(p.isBlocked()) {
+            blockedProcesses.remove(p);
+            p.unblock();
+        } else if(dequeue(p)) {
+            readyCount--;
+        }
+    }
+
+    @Override
+    public ScheduledProcess getNextProcess() {
+        admitSubmissions();
+        chargeRunning();
+
+        ScheduledProcess next = selectNext();
+        if(next != null) {
+            running       = next;
+            runningCycles = next.getCpuCycles();
+        }
+
+        return next;
+    }
+
+    @Override
+    public boolean isOutranked(ScheduledProcess p) {
+        admitSubmissions();
+
+        if(p != running) return true;
+        return readyCount > 1 && isOutranked(p, p.getCpuCycles() - runningCycles);
+    }
+
+    /**
+     * Counts the cycles against the process. Policies that order processes
+     * by their utilization as it grows also reorder them here.
+     */
+    @Override
+    public void updateProcessUtilization(ScheduledProcess p, int cycles) {
+        p.incrementUtilization(cycles);
+    }
+
+    @Override
+    public void blockProcess(ScheduledProcess p, int delay) {
+        if(delay <= 0 || p.isBlocked()) return;
+
+        if(p == running) {
+            chargeRunning();
+        }
+
+        if(dequeue(p)) {
+            readyCount--;
+        }
+        p.block(clock + delay, delay);
+        blockedProcesses.add(p);
+    }
+
+    /**
+     * Only the processes that wake up are touched. A process is ready from
+     * the cycle its I/O completed on, even if the clock moved past it.
+     */
+    @Override
+    public void updateBlockedProcesses() {
+        advanceClock(1);
+    }
+
+    @Override
+    public void advanceClock(long cycles) {
+        clock += cycles;
+
+        if(clock >= nextDecay) {
+            epoch = (int) (clock / decayInterval);
+            nextDecay = (clock / decayInterval + 1) * decayInterval;
+            decay();
+        }
+
+        ScheduledProcess p = blockedProcesses.peek();
+        while(p != null && p.getWakeCycle() <= clock) {
+            blockedProcesses.remove(p);
+            p.unblock();
+            makeReady(p);
+            p.setReadyCycle(p.getWakeCycle());
+
+            p = blockedProcesses.peek();
+        }
+    }
+
+    @Override
+    public ScheduledProcess takeReadyProcess() {
+        if(readyCount == 0) return null;
+
+        ScheduledProcess p = selectVictim();
+        removeProcess(p);
+        return p;
+    }
+
+    @Override
+    public ScheduledProcess getProcess(int id) {
+        return processes.get(id);
+    }
+
+    /**
+     * Writes the clock, the decay state, every process, the policy's own
+     * state and the processes submitted or handed over but not yet
+     * admitted. The queues are not written, since they are rebuilt from the
+     * processes. No thread may submit while the checkpoint is written.
+     */
+    @Override
+    public void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putLong(clock);
+        out.putLong(decayInterval);
+        out.putInt(epoch);
+
+        out.putInt(processes.size());
+        for(int slot = 0; slot < processes.capacity(); slot++) {
+            ScheduledProcess p = processes.valueAt(slot);
+            if(p != null) {
+                p.writeCheckpoint(out);
+            }
+        }
+
+        writePolicyCheckpoint(out);
+
+        out.putInt(running != null ? running.getId() : -1);
+        out.putLong(runningCycles);
+
+        out.putInt(submissions.size());
+        for(ScheduledProcess p : submissions) {
+            p.writeCheckpoint(out);
+        }
+
+        out.putInt(handOvers.size());
+        for(ScheduledProcess p : handOvers) {
+            p.writeCheckpoint(out);
+        }
+    }
+
+    /**
+     * The decay interval is the one in the checkpoint.
+     */
+    @Override
+    public void readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images) throws IOException {
+        clock = in.getLong();
+        setDecayInterval(in.getLong());
+        epoch = in.getInt();
+
+        int processCount = in.getInt();
+        for(int i = 0; i < processCount; i++) {
+            ScheduledProcess p = ScheduledProcess.readCheckpoint(in, images);
+            long readyCycle = p.getReadyCycle();
+
+            addProcess(p);
+            if(p.isBlocked()) {
+                blockedProcesses.add(p);
+            }
+            p.setReadyCycle(readyCycle);
+        }
+
+        readPolicyCheckpoint(in);
+
+        int runningId = in.getInt();
+        running       = runningId >= 0 ? processes.get(runningId) : null;
+        runningCycles = in.getLong();
+
+        int count = in.getInt();
+        for(int i = 0; i < count; i++) {
+            submissions.offer(ScheduledProcess.readCheckpoint(in, images));
+        }
+
+        count = in.getInt();
+        for(int i = 0; i < count; i++) {
+            handOvers.offer(ScheduledProcess.readCheckpoint(in, images));
+        }
+    }
+
+    @Override
+    public long getClock() {
+        return clock;
+    }
+
+    @Override
+    public long getNextDecay() {
+        return nextDecay;
+    }
+
+    @Override
+    public int getReadyCount() {
+        return readyCount;
+    }
+
+    @Override
+    public int getBlockedCount() {
+        return blockedProcesses.size();
+    }
+
+    @Override
+    public boolean hasProcesses() {
+        return !submissions.isEmpty() || !handOvers.isEmpty() || processes.size() > 0;
+    }
+
+    /**
+     * Prepares a process joining the scheduler, before it is queued.
+     */
+    protected void admit(ScheduledProcess p) {
+    }
+
+    /**
+     * Adds a process to the ready processes.
+     */
+    protected abstract void enqueue(ScheduledProcess p);
+
+    /**
+     * Takes a process out of the ready processes.
+     *
+     * @return False if it was not there.
+     */
+    protected abstract boolean dequeue(ScheduledProcess p);
+
+    /**
+     * @return The ready process to run next, or null if none is ready.
+     */
+    protected abstract ScheduledProcess selectNext();
+
+    /**
+     * @param p      The process picked last, still ready.
+     * @param cycles The cycles it ran since it was picked, not yet charged.
+     * @return True if another ready process would be picked over it, were
+     * it charged now. At least one other process is ready.
+     */
+    protected abstract boolean isOutranked(ScheduledProcess p, long cycles);
+
+    /**
+     * @return A ready process to hand to another CPU. At least one process
+     * is ready.
+     */
+    protected abstract ScheduledProcess selectVictim();
+
+    /**
+     * Charges a process leaving the CPU for the cycles it ran. The process
+     * is still in the ready processes, even if it is about to block or be
+     * removed.
+     *
+     * @param cycles The cycles it ran since it was picked.
+     */
+    protected void charge(ScheduledProcess p, long cycles) {
+    }
+
+    /**
+     * Called when the clock enters a new epoch.
+     */
+    protected void decay() {
+    }
+
+    /**
+     * Writes the state of the policy that is not kept in the processes.
+     */
+    protected void writePolicyCheckpoint(Checkpoint.Writer out) throws IOException {
+    }
+
+    /**
+     * Reads the state written by writePolicyCheckpoint. Every process has
+     * been added by then.
+     */
+    protected void readPolicyCheckpoint(Checkpoint.Reader in) throws IOException {
+    }
+
+    /**
+     * @return The processes in this scheduler, by ID.
+     */
+    protected IntHashMap<ScheduledProcess> getProcesses() {
+        return processes;
+    }
+
+    /**
+     * @return The group's share of the CPU, between 0 and 1.
+     */
+    protected double getGroupShare(int groupId) {
+        Double share = groupShares.get(groupId);
+        return share != null ? share : SchedulerProcessConfiguration.DEFAULT_GROUP_SHARE;
+    }
+
+    /**
+     * The tickets of a process under the proportional share policies, in
+     * proportion to its group's share of the CPU, the product of the shares
+     * down its path of groups, and in inverse proportion to its weight, as a
+     * heavier weight worsens the fair share priority. The default share and
+     * a weight of 0.5 give 1000 tickets.
+     */
+    protected int getTickets(ScheduledProcess p) {
+        double share = getGroupShare(p.getGroupId());
+        for(int groupId : p.getGroupPath()) {
+            share *= getGroupShare(groupId);
+        }
+
+        double tickets = BASE_TICKETS * share / Math.max(p.getWeight(), MIN_WEIGHT);
+        return (int) Math.max(1, Math.round(tickets));
+    }
+
+    protected long getDecayInterval() {
+        return decayInterval;
+    }
+
+    /**
+     * @return The number of decay intervals elapsed.
+     */
+    protected int getEpoch() {
+        return epoch;
+    }
+
+    private void makeReady(ScheduledProcess p) {
+        enqueue(p);
+        readyCount++;
+        p.setReadyCycle(clock);
+    }
+
+    private void chargeRunning() {
+        if(running == null) return;
+
+        ScheduledProcess p = running;
+        running = null;
+        charge(p, p.getCpuCycles() - runningCycles);
+    }
+
+    private void admitSubmissions() {
+        ScheduledProcess p;
+        while((p = handOvers.poll()) != null) {
+            // still waiting since it last became ready
+            p.rebase(clock);
+            long readyCycle = p.getReadyCycle();
+
+            addProcess(p);
+            p.setReadyCycle(readyCycle);
+        }
+
+        while((p = submissions.poll()) != null) {
+            addProcess(p);
+        }
+    }
+
+    private static int compareWakeCycles(ScheduledProcess a, ScheduledProcess b) {
+        int cmp = Long.compare(a.getWakeCycle(), b.getWakeCycle());
+        return cmp != 0 ? cmp : Integer.compare(a.getId(), b.getId());
+    }
+}
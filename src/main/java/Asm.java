@@ -1,12 +1,25 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.io.FileReader;
-import java.lang.Exception;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 import java.io.BufferedReader;
-import java.util.Scanner;
-import java.io.FileNotFoundException;
+import java.io.StringReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 // one assembly instruction
 class ProcInstruction {
@@ -20,103 +33,207 @@ class ProcInstruction {
         type = INST_EMPTY;
         addr = curaddr;
         sourceLine = asmLine;
-        lineScan = null;
+        operands = null;
     }
 
     int type;               // type of instruction
     int addr;               // memory address
     String sourceLine;      // source code for this instruction
-    Scanner lineScan;       // scanner saved for later use (branches)
+    String[] operands;      // tokens after the opcode, saved for later use (branches)
 }
 
+// assembles one program; create one per program, or call assemble()
+// from as many threads as you like
 public class Asm {
-    // what instruction are we on?    
-    static int instructionPointer;
-    static ArrayList<ProcInstruction> program = new ArrayList<>();
-    
+    // rebuild cache, in the working directory
+    static final String CACHE_FILE = ".asmcache";
+
+    // tokens are separated by whitespace
+    private static final Pattern WHITESPACE = Pattern.compile( "\\p{javaWhitespace}+" );
+
+    // name of the program, for messages
+    private String name;
+
+    private ArrayList<ProcInstruction> program = new ArrayList<>();
+
     // list of symbols and locations
-    static HashMap<String,Integer> symbolTable = new HashMap<>();  
-    
+    private HashMap<String,Integer> symbolTable = new HashMap<>();
+
+    private Asm( String name ) {
+        this.name = name;
+    }
+
+    // usage: java Asm [-b] [-f] file.pasm ...
+    // -b writes the binary .pexe format instead of the text one
+    // -f assembles every file, even those that have not changed
+    // the files are assembled in parallel, and a file is skipped if its
+    // source and .pexe are unchanged since it was last assembled
     public static void main(String[] args) {
-        // TODO code application logic here
-        try {
-            // open the input file
-            String inFileName = args[0];
-
-            FileReader sfile = new FileReader( inFileName );
-            BufferedReader in = new BufferedReader( sfile );
-            
-            // replace ".pasm" with "pexe"
-            int alen = inFileName.length();
-            
-            // make sure it ended with '.pasm'
-            if ( ! inFileName.substring(alen-5).equals(".pasm")) {
+        boolean binary = false;
+        boolean force = false;
+        LinkedHashSet<Path> sources = new LinkedHashSet<>();
+
+        for ( String arg : args ) {
+            if ( arg.equals("-b") )
+                binary = true;
+            else if ( arg.equals("-f") )
+                force = true;
+            // make sure it ends with '.pasm'
+            else if ( ! arg.endsWith(".pasm") ) {
                 // no, have error
-                System.out.println("Filename doesn't end in .pasm, aborting");
+                System.out.println("Filename " + arg + " doesn't end in .pasm, aborting");
                 System.exit(1);
+            } else
+                sources.add( Paths.get( arg ) );
+        }
+
+        if ( sources.isEmpty() ) {
+            System.out.println("usage: java Asm [-b] [-f] file.pasm ...");
+            System.exit(1);
+        }
+
+        try {
+            AssemblyCache cache = new AssemblyCache( Paths.get( CACHE_FILE ) );
+            if ( force )
+                cache.clear();
+
+            int threads = Math.min( sources.size(), Runtime.getRuntime().availableProcessors() );
+            ExecutorService pool = Executors.newFixedThreadPool( threads );
+
+            List<Future<Boolean>> results = new ArrayList<>();
+            for ( Path source : sources ) {
+                boolean format = binary;
+                results.add( pool.submit( () -> assembleFile( source, format, cache ) ) );
+            }
+            pool.shutdown();
+
+            int assembled = 0, upToDate = 0, failed = 0;
+            Iterator<Path> source = sources.iterator();
+            for ( Future<Boolean> result : results ) {
+                Path file = source.next();
+                try {
+                    if ( result.get() )
+                        assembled++;
+                    else
+                        upToDate++;
+                } catch ( ExecutionException e ) {
+                    failed++;
+                    if ( e.getCause() instanceof IllegalArgumentException )
+                        System.out.println("Error: " + e.getCause().getMessage() );
+                    else
+                        System.err.println("Error assembling " + file + ": " + e.getCause() );
+                }
             }
-            
-            // generate output file name
-            String outFileName = inFileName.substring(0, alen-5) + ".pexe";            
-            PrintWriter out = new PrintWriter( outFileName );
-            
-            int psize = firstPass( in );
-            in.close();            
+
+            cache.save();
+
+            if ( sources.size() > 1 )
+                System.out.println( assembled + " assembled, " + upToDate + " up to date, " + failed + " failed" );
+            if ( failed > 0 )
+                System.exit(1);
+        } catch ( Exception e ) {
+            System.err.println( e.getMessage() );
+            System.exit(1);
+        }
+    }
+
+    // assemble a source file into the .pexe file next to it, unless the
+    // cache (if any) has it as up to date
+    // return true if it was assembled
+    // throws IllegalArgumentException for errors in the source
+    public static boolean assembleFile( Path source, boolean binary, AssemblyCache cache ) throws IOException {
+        byte[] text = Files.readAllBytes( source );
+        String hash = AssemblyCache.hash( text );
+
+        // replace ".pasm" with ".pexe"
+        String inFileName = source.getFileName().toString();
+        Path output = source.resolveSibling( inFileName.substring(0, inFileName.length()-5) + ".pexe" );
+
+        if ( cache != null ) {
+            if ( cache.isUpToDate( source, hash, binary, output ) )
+                return false;
+            // forget it until it has been written again
+            cache.remove( source );
+        }
+
+        int[] code = assemble( source.toString(),
+                new BufferedReader( new StringReader( new String( text, Charset.defaultCharset() ) ) ) );
+
+        if ( binary ) {
+            // header and code, entry point at address 0
+            OutputStream out = new BufferedOutputStream( new FileOutputStream( output.toFile() ) );
+            ProgramImage.writeBinary( out, code, 0 );
+            out.close();
+        } else {
+            PrintWriter out = new PrintWriter( output.toFile() );
             // output size of the program
-            out.println(psize);
-            
-            secondPass( out );
+            out.println(code.length);
+            for ( int value : code )
+                out.println(value);
             out.close();
-        } catch ( Exception e ) {
-            System.err.println( e.getMessage() );                    
         }
+
+        if ( cache != null )
+            cache.put( source, hash, binary, output );
+        return true;
+    }
+
+    // assemble a program
+    // return the program, one byte per address
+    // throws IllegalArgumentException for errors in the source
+    public static int[] assemble( String name, BufferedReader in ) throws IOException {
+        Asm asm = new Asm( name );
+        int psize = asm.firstPass( in );
+        return asm.secondPass( psize );
     }
 
     // do the first pass
     // read the code and determine the address of each instruction
     // return the total amount of memory used
-    protected static int firstPass( BufferedReader in ) throws IOException, FileNotFoundException {
+    private int firstPass( BufferedReader in ) throws IOException {
         int instAddr = 0;           // address of the next instruction
-        
+
         // first pass - read lines and determine locations
         while ( true ) {
             String asmLine = in.readLine();
-            
+
             // end of input?
             if ( asmLine == null )
                 return instAddr;
-			
+
             // instruction to be added to the program
             ProcInstruction inst = new ProcInstruction( instAddr, asmLine );
-            
-			// empty line?
-			if ( asmLine.length() == 0 )
-				continue;
-			
-            // prepare for scanning
-            Scanner scanLine = new Scanner( asmLine );
-            
+
+            // empty line?
+            String trimmed = asmLine.strip();
+            if ( trimmed.length() == 0 )
+                continue;
+
+            // split into tokens
+            String[] tokens = WHITESPACE.split( trimmed );
+            int next = 0;
+
             // process a label if we have one
             // labels must begin in first column
             if ( Character.isAlphabetic( asmLine.charAt(0) ) ) {
-                String label = scanLine.next();
-                
+                String label = tokens[next++];
+
                 // add this label
                 symbolTable.put( label, instAddr );
             }
-            
+
             // get "opcode"
-            if ( ! scanLine.hasNext() ) {
+            if ( next == tokens.length ) {
                 // empty line (except possibly for label)
                 continue;
             }
-            
+
             // get the next item (opcode)
-            String op = scanLine.next();
+            String op = tokens[next++];
             // nothing before a comment?
             if ( op.charAt(0) == ';' )
                 continue;
-            
+
             // so we do have something
             // what type of "instruction"?
             switch( op.charAt(0) ) {
@@ -130,39 +247,42 @@ public class Asm {
                 // blocking input/output statement
                 case 'I':
                 case 'i':
-                    inst.type = ProcInstruction.INST_BLOCK;                       
+                    inst.type = ProcInstruction.INST_BLOCK;
                     instAddr++;     // one byte instruction
-                    break;  
+                    break;
 
                 // branch statement
                 case 'B':
                 case 'b':
-                    inst.type = ProcInstruction.INST_BR;     
+                    inst.type = ProcInstruction.INST_BR;
                     instAddr += 3;      // three byte instruction
                                         // opcode + 2 byte destination
-                    // save scanner for getting percentage/destination label
-                    inst.lineScan = scanLine;
+                    // save the rest for getting percentage/destination label
+                    inst.operands = Arrays.copyOfRange( tokens, next, tokens.length );
                     break;
-                    
+
                 // exit this program
                 case 'X':
                 case 'x':
-                    inst.type = ProcInstruction.INST_EXIT;    
-                    instAddr++;     // one byte instruction                    
+                    inst.type = ProcInstruction.INST_EXIT;
+                    instAddr++;     // one byte instruction
                     break;
 
                 default:
-                    System.err.println("Improper instuction token in " + asmLine );
-                    continue;       // skip this 
+                    System.err.println(name + ": improper instruction token in " + asmLine );
+                    continue;       // skip this
             }
             // save this for the second pass
             program.add(inst);
         }
     }
-    
+
     // do second pass and generate code
-    public static void secondPass( PrintWriter out ) {        
-        // generate the actual code        
+    // return the program, one byte per address
+    private int[] secondPass( int psize ) {
+        int[] code = new int[psize];
+
+        // generate the actual code
         // primarily now look up branch destinations
         for( ProcInstruction inst : program ) {
             switch( inst.type ) {
@@ -170,42 +290,52 @@ public class Asm {
                 case ProcInstruction.INST_BLOCK:    // blocking (input/output)
                 case ProcInstruction.INST_EXIT:     // exit program
                     // generate the instruction
-                    out.println(inst.type);
+                    code[inst.addr] = inst.type;
                     break;
                 case ProcInstruction.INST_BR:       // Branch (128-228) with jump percentage
+                    if ( inst.operands.length < 2 )
+                        throw new IllegalArgumentException( name + ": branch needs a percentage and a destination in "
+                                + inst.sourceLine.strip() );
+
                     // get the branch percentage
-                    int brPercent = inst.lineScan.nextInt();
+                    int brPercent;
+                    try {
+                        brPercent = Integer.parseInt( inst.operands[0] );
+                    } catch ( NumberFormatException e ) {
+                        throw new IllegalArgumentException( name + ": branch percentage "
+                                + inst.operands[0] + " is not a number" );
+                    }
                     // check for valid range
                     if ( brPercent < 0 || brPercent > 100 ) {
                         // illegal percentage
-                        System.out.println("Error: branch percentage "
-                                + brPercent + " is outside of 0..100");
-                        System.exit(1);
+                        throw new IllegalArgumentException( name + ": branch percentage "
+                                + brPercent + " is outside of 0..100" );
                     }
-                    
+
                     // isolate the destination label
-                    String destLabel = inst.lineScan.next();
-                    
+                    String destLabel = inst.operands[1];
+
                     // does the label exist?
                     if ( ! symbolTable.containsKey(destLabel)) {
-                        // can't find the destionation label
-                        System.out.println("Error: Cannot find the branch destionation " + destLabel );
-                        System.exit(1);                        
+                        // can't find the destination label
+                        throw new IllegalArgumentException( name + ": cannot find the branch destination " + destLabel );
                     }
-                    
+
                     // look up label, get corresponding location
-                    int brDest = (Integer) symbolTable.get(destLabel);
-                    
+                    int brDest = symbolTable.get(destLabel);
+
                     // generate the instruction and
-                    out.println(ProcInstruction.INST_BR+brPercent);
+                    code[inst.addr] = ProcInstruction.INST_BR+brPercent;
                     //      destination in big-endian order
-                    out.println(brDest>>8);
-                    out.println(brDest & 0x0ff);
+                    code[inst.addr+1] = brDest>>8;
+                    code[inst.addr+2] = brDest & 0x0ff;
                     break;
                 default:
                     System.err.println("Internal error: second pass with type=" + inst.type);
             }
         }
+
+        return code;
     }
 }
 
@@ -0,0 +1,140 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The hashes of the sources Asm has assembled, kept in a file so a later
+ * build can skip the sources that have not changed.
+ *
+ * After a version line, each line holds the SHA-256 of a source, whether it
+ * was assembled to the binary format, the modification time of the program
+ * written from it, and the path of the source. A source is up to date if its
+ * hash and format match and its program is still there with the same
+ * modification time, so a program that was removed or overwritten since is
+ * assembled again.
+ */
+class AssemblyCache {
+    private static final String VERSION = "asmcache 1";
+
+    private static class Entry {
+        String hash;
+        boolean binary;
+        long outputModified;
+    }
+
+    private Path file;
+    private ConcurrentHashMap<String, Entry> entries;
+
+    /**
+     * @param file The cache file, read if it exists. A cache of another
+     *             version is ignored.
+     */
+    AssemblyCache(Path file) throws IOException {
+        this.file    = file;
+        this.entries = new ConcurrentHashMap<>();
+
+        try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if(!VERSION.equals(in.readLine())) return;
+
+            String line;
+            while((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if(fields.length < 4) continue;
+
+                Entry entry = new Entry();
+                entry.hash           = fields[0];
+                entry.binary         = fields[1].equals("b");
+                entry.outputModified = Long.parseLong(fields[2]);
+                entries.put(fields[3], entry);
+            }
+        } catch (NoSuchFileException e) {
+            //First build
+        } catch (NumberFormatException e) {
+            throw new IOException(file + " is not an assembly cache.");
+        }
+    }
+
+    /**
+     * @return The SHA-256 of a source, in hex.
+     */
+    static String hash(byte[] source) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for(byte b : MessageDigest.getInstance("SHA-256").digest(source)) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //Every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return True if the source was assembled to the same format when it
+     * had this hash, and the program written then is unchanged.
+     */
+    boolean isUpToDate(Path source, String hash, boolean binary, Path output) throws IOException {
+        Entry entry = entries.get(key(source));
+
+        return entry != null && entry.hash.equals(hash) && entry.binary == binary && Files.exists(output)
+                && Files.getLastModifiedTime(output).toMillis() == entry.outputModified;
+    }
+
+    /**
+     * Records a source that was just assembled.
+     */
+    void put(Path source, String hash, boolean binary, Path output) throws IOException {
+        Entry entry = new Entry();
+        entry.hash           = hash;
+        entry.binary         = binary;
+        entry.outputModified = Files.getLastModifiedTime(output).toMillis();
+        entries.put(key(source), entry);
+    }
+
+    /**
+     * Forgets a source, until it is put again.
+     */
+    void remove(Path source) {
+        entries.remove(key(source));
+    }
+
+    /**
+     * Forgets every source, so all are assembled again.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Writes the cache under a temporary name and moves it into place.
+     */
+    void save() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))) {
+            out.println(VERSION);
+            for(Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                Entry e = entry.getValue();
+                out.println(e.hash + "\t" + (e.binary ? "b" : "t") + "\t" + e.outputModified + "\t" + entry.getKey());
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(Path source) {
+        return source.toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent replications of one configuration in parallel and prints
+ * the mean of each statistic with a 95% confidence interval.
+ *
+ * Each replication gets its own generator split from the seed, in
+ * replication order, so a batch run with a given seed always gives the same
+ * results however many threads run it, as long as each replication runs
+ * on one CPU.
+ */
+class BatchRunner {
+    // two-sided 95% Student t critical values, indexed by degrees of freedom
+    private static final double[] T_95 = {
+        Double.NaN, 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    /**
+     * Running mean and variance of one statistic (Welford's method).
+     */
+    static class Summary {
+        private int count;
+        private double mean;
+        private double m2;
+
+        void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return Half the width of the 95% confidence interval of the mean.
+         */
+        double getConfidence() {
+            if(count < 2) return 0;
+
+            int df = count - 1;
+            double t = df < T_95.length ? T_95[df] : 1.960;
+            return t * Math.sqrt(m2 / df / count);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.4g +/- %.2g", getMean(), getConfidence());
+        }
+    }
+
+    private SchedulerProcessConfiguration config;
+
+    BatchRunner(SchedulerProcessConfiguration config) {
+        this.config = config;
+    }
+
+    void run(SplitMixRandom rng) throws InterruptedException, ExecutionException {
+        int replications = config.getReplications();
+        int threads = Math.max(1, Math.min(replications, Runtime.getRuntime().availableProcessors() / config.getCpus()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        List<Future<SimulationStatistics>> results = new ArrayList<>();
+        for(int i = 0; i < replications; i++) {
+            SplitMixRandom replicationRng = rng.split();
+
+            results.add(pool.submit(() -> {
+                Simulation simulation = new Simulation(config, replicationRng, null);
+                simulation.keepStatistics();
+                simulation.loadPrograms();
+                simulation.run();
+                return simulation.getStatistics();
+            }));
+        }
+
+        TreeMap<Integer, Summary[]> processes = new TreeMap<>();
+        TreeMap<Integer, Integer> processGroups = new TreeMap<>();
+        TreeMap<Integer, Summary[]> groups = new TreeMap<>();
+        Summary cycles = new Summary();
+        Summary majorFaults = new Summary();
+        Summary minorFaults = new Summary();
+        Summary evictions = new Summary();
+
+        try {
+            for(Future<SimulationStatistics> result : results) {
+                SimulationStatistics stats = result.get();
+                cycles.add(stats.getCycles());
+                majorFaults.add(stats.getMajorFaults());
+                minorFaults.add(stats.getMinorFaults());
+                evictions.add(stats.getEvictions());
+
+                for(SimulationStatistics.ProcessStatistics p : stats.getProcesses()) {
+                    Summary[] s = summaries(processes, p.id);
+                    s[0].add(p.turnaround);
+                    s[1].add(p.wait);
+                    s[2].add(p.cpuShare);
+                    s[3].add(p.majorFaults + p.minorFaults);
+                    processGroups.put(p.id, p.groupId);
+                }
+
+                for(SimulationStatistics.GroupStatistics g : stats.getGroups()) {
+                    Summary[] s = summaries(groups, g.groupId);
+                    s[0].add(g.meanTurnaround);
+                    s[1].add(g.cpuShare);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println("Replications: " + replications + ", cycles: " + cycles);
+        System.out.println("Page faults: major " + majorFaults + ", minor " + minorFaults + ", evictions " + evictions);
+        System.out.println();
+        System.out.println(String.format("%-8s %-6s %-22s %-22s %-22s %-22s", "Process", "Group", "Turnaround", "Wait",
+                "CPU share", "Page faults"));
+        for(Map.Entry<Integer, Summary[]> entry : processes.entrySet()) {
+            Summary[] s = entry.getValue();
+            System.out.println(String.format("%-8d %-6d %-22s %-22s %-22s %-22s",
+                    entry.getKey(), processGroups.get(entry.getKey()), s[0], s[1], s[2], s[3]));
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-8s %-22s %-22s", "Group", "Mean turnaround", "CPU share"));
+        for(Map.Entry<Integer, Summary[]> entry : groups.entrySet()) {
+            Summary[] s = entry.getValue();
+            System.out.println(String.format("%-8d %-22s %-22s", entry.getKey(), s[0], s[1]));
+        }
+    }
+
+    private static Summary[] summaries(Map<Integer, Summary[]> map, int id) {
+        return map.computeIfAbsent(id, key -> new Summary[] {new Summary(), new Summary(), new Summary(), new Summary()});
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary checkpoint files of a running simulation.
+ *
+ * A checkpoint starts with the magic number "SIMC" and a version, followed
+ * by the state written by Simulation, each part in turn writing its own
+ * fields. Values are big-endian and strings are UTF-8 with their length in
+ * front. The file is written through one direct buffer and a file channel.
+ */
+class Checkpoint {
+    static final int MAGIC   = 0x53494D43;
+    static final int VERSION = 4;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes a checkpoint. The file is written under a temporary name and
+     * only replaces an earlier checkpoint when finish is called, so a crash
+     * while writing leaves the earlier one intact.
+     */
+    static class Writer implements Closeable {
+        private Path path;
+        private Path temporary;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+
+        Writer(File file) throws IOException {
+            this.path      = file.toPath();
+            this.temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            this.channel   = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer    = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            putInt(MAGIC);
+            putInt(VERSION);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putBoolean(boolean value) throws IOException {
+            ensure(1);
+            buffer.put((byte) (value ? 1 : 0));
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+
+            for(byte b : bytes) {
+                ensure(1);
+                buffer.put(b);
+            }
+        }
+
+        /**
+         * Writes an array with its length in front, or -1 for null.
+         */
+        void putInts(int[] values) throws IOException {
+            if(values == null) {
+                putInt(-1);
+                return;
+            }
+
+            putInt(values.length);
+            for(int value : values) {
+                putInt(value);
+            }
+        }
+
+        /**
+         * Completes the checkpoint and moves it into place.
+         */
+        void finish() throws IOException {
+            flush();
+            channel.force(false);
+            channel.close();
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Throws away an unfinished checkpoint.
+         */
+        @Override
+        public void close() throws IOException {
+            if(channel.isOpen()) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if(buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a checkpoint back in the order it was written.
+     */
+    static class Reader implements Closeable {
+        private File file;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+
+        Reader(File file) throws IOException {
+            this.file    = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.buffer  = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.limit(0);
+
+            if(channel.size() < 2 * Integer.BYTES || getInt() != MAGIC) {
+                throw new IOException(file + " is not a checkpoint.");
+            }
+
+            int version = getInt();
+            if(version != VERSION) {
+                throw new IOException(file + " is a version " + version + " checkpoint, expected version " +
+                        VERSION + ".");
+            }
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            ensure(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        boolean getBoolean() throws IOException {
+            ensure(1);
+            return buffer.get() != 0;
+        }
+
+        String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+
+            for(int i = 0; i < bytes.length; i++) {
+                ensure(1);
+                bytes[i] = buffer.get();
+            }
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return An array written by putInts, or null.
+         */
+        int[] getInts() throws IOException {
+            int length = getInt();
+            if(length < 0) return null;
+
+            int[] values = new int[length];
+            for(int i = 0; i < length; i++) {
+                values[i] = getInt();
+            }
+
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if(buffer.remaining() >= bytes) return;
+
+            buffer.compact();
+            while(buffer.position() < bytes) {
+                if(channel.read(buffer) < 0) {
+                    throw new IOException(file + " ends in the middle of the checkpoint.");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
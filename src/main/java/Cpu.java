@@ -0,0 +1,653 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One simulated CPU.
+ *
+ * Holds the CPU registers and runs the fetch/execute loop over the processes
+ * of its own scheduler. When several CPUs run together they form a
+ * CpuCluster, and each CPU runs on its own thread.
+ *
+ * In the thread-per-process model, the loop is run by the thread of the
+ * process dispatched, and passed on to the thread of the next process at
+ * each switch. The CPU's own thread runs it only while no process is ready.
+ */
+class Cpu implements Runnable {
+    // state when this instruction finishes
+    private static final int STAT_GO    = 1;    // able to continue running
+    private static final int STAT_BLOCK = 2;    // blocking on I/O
+    private static final int STAT_EXIT  = 3;    // process is finished
+    private static final int STAT_ERROR = 4;    // run-time error found
+
+    private int id;
+    private CpuCluster cluster;
+    private SchedulerProcessConfiguration config;
+    private PagedMemory memory;
+    private SplitMixRandom rng;
+
+    // where the scheduler's actions are logged, or null to run silently
+    private EventLog.Ring events;
+
+    /**
+     * Scheduler, running the policy chosen.
+     *
+     * Handles process queuing operations for this CPU's share of the
+     * processes, and takes in processes handed over from other threads.
+     */
+    private Scheduler scheduler;
+
+    // running process
+    private ScheduledProcess process;
+
+    // running process instruction pointer
+    private int instructionPointer;
+
+    // virtual addresses of the page known to be resident
+    private int pageStart;
+    private int pageEnd;
+
+    // running process address size
+    private int boundSize;
+
+    // running process decoded program
+    private DecodedProgram program;
+    private int[] code;
+    private int[] destinations;
+
+    // idle CPU waiting for this CPU to hand over a process
+    private AtomicReference<Cpu> stealRequest;
+
+    // number of ready processes, as of the last dispatch
+    private volatile int readyCount;
+
+    // no process from the trace arrives before this clock cycle
+    private long nextArrival;
+
+    // clock cycle of the next checkpoint
+    private long nextCheckpoint;
+
+    // with other CPUs, the scheduler's clock as they see it, and the cycle
+    // this CPU may run up to before it waits for the slowest of them
+    private boolean paced;
+    private AtomicLong sharedClock;
+    private long clockLimit;
+
+    // clock cycles before the next timer interrupt, as of the last checkpoint
+    private int timerLeft;
+
+    // cycles run in the current slice before the running instruction, not
+    // yet added to the scheduler's clock
+    private int sliceOffset;
+
+    // resuming from a checkpoint rather than starting afresh
+    private boolean restored;
+
+    // thread per process, and the CPU's own thread that runs while idle
+    private boolean processThreads;
+    private Thread cpuThread;
+    private volatile boolean idle;
+
+    // live metrics, and this CPU's own counters
+    private SchedulerMetrics metrics;
+    private SchedulerMetrics.CpuMetrics counters;
+
+    // CPU cycles the running process had used when it was dispatched
+    private long dispatchCycles;
+
+    Cpu(int id, CpuCluster cluster, Scheduler scheduler, SchedulerProcessConfiguration config,
+        PagedMemory memory, SchedulerMetrics metrics, SplitMixRandom rng, EventLog.Ring events) {
+        this.id        = id;
+        this.cluster   = cluster;
+        this.scheduler = scheduler;
+        this.config    = config;
+        this.memory    = memory;
+        this.metrics   = metrics;
+        this.counters  = metrics.getCpu(id);
+        this.rng       = rng;
+        this.events    = events;
+        this.stealRequest = new AtomicReference<>();
+        this.sharedClock  = new AtomicLong();
+        this.timerLeft    = config.getQuantum();
+        this.processThreads = config.isProcessThreads();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    int getReadyCount() {
+        return readyCount;
+    }
+
+    /**
+     * @return The clock cycle this CPU has got to, as last published, or
+     * Long.MAX_VALUE once it has stopped.
+     */
+    long getSharedClock() {
+        return sharedClock.get();
+    }
+
+    /**
+     * Asks this CPU to hand one of its ready processes over to an idle CPU.
+     *
+     * @param thief The idle CPU.
+     * @return False if another CPU has already asked.
+     */
+    boolean requestSteal(Cpu thief) {
+        return stealRequest.compareAndSet(null, thief);
+    }
+
+    /**
+     * Runs the CPU until every process has exited or a CPU has failed. A
+     * failure is left for the cluster to throw once every CPU has stopped.
+     */
+    @Override
+    public void run() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            cluster.fail(e);
+        } finally {
+            sharedClock.set(Long.MAX_VALUE);
+            cluster.cpuFinished();
+        }
+    }
+
+    /**
+     * Fails the CPU from the thread of the process running on it, and hands
+     * the CPU back to its own thread to stop.
+     */
+    void fail(RuntimeException e) {
+        cluster.fail(e);
+        switchThread(null);
+    }
+
+    private void dispatch() {
+        ScheduledProcess curProc;
+        if (restored) {
+            // carry on with the process running at the checkpoint
+            curProc = process;
+        } else {
+            nextArrival = cluster.hasArrivals() ? 0 : Long.MAX_VALUE;
+            curProc = loadNextProcess(null);
+        }
+
+        nextCheckpoint = cluster.nextCheckpoint(scheduler.getClock());
+
+        paced = cluster.size() > 1;
+        sharedClock.set(scheduler.getClock());
+
+        if (processThreads) {
+            cpuThread = Thread.currentThread();
+
+            // wait while the process threads run, and take over when idle
+            while (runLoop(curProc, null)) {
+                while (!idle) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                curProc = null;
+            }
+        } else {
+            runLoop(curProc, null);
+        }
+    }
+
+    /**
+     * Runs the loop on the thread of a process dispatched on this CPU, until
+     * the process is switched out.
+     *
+     * @return True if the process has exited.
+     */
+    boolean runProcess(ScheduledProcess self) {
+        runLoop(self, self);
+        return self.hasExited();
+    }
+
+    /**
+     * The fetch/execute loop, run until every process has exited or, with a
+     * thread per process, until another thread is to run it.
+     *
+     * @param curProc The process to run first, or null.
+     * @param self    The process whose thread is running the loop, or null
+     *                for the CPU's own thread.
+     * @return True if the loop was handed to another thread.
+     */
+    private boolean runLoop(ScheduledProcess curProc, ScheduledProcess self) {
+        // clock cycles before next timer interrupt
+        int timer_left = timerLeft;
+
+        // @todo keep going as long as we have a process around
+        while (cluster.hasProcesses()){
+            // too far ahead of another CPU? wait for it
+            if (paced) {
+                keepPace();
+            }
+            // checkpoint due on this cycle? wait for the other CPUs to get there
+            if (scheduler.getClock() >= nextCheckpoint) {
+                timerLeft = timer_left;
+                cluster.checkpoint();
+                nextCheckpoint = cluster.nextCheckpoint(scheduler.getClock());
+            }
+            // processes from the trace arriving on this cycle?
+            if (scheduler.getClock() >= nextArrival) {
+                nextArrival = cluster.admitArrivals(scheduler);
+
+                // an idle CPU starts on them straight away
+                if (curProc == null && scheduler.getReadyCount() > 0) {
+                    curProc = loadNextProcess(null);
+                }
+            }
+
+            // another process's thread to run it?
+            if (processThreads && curProc != self) {
+                timerLeft = timer_left;
+                switchThread(curProc);
+                return true;
+            }
+
+            // what next?
+            if(curProc != null) {
+                // let it run until it stops or anything else is due, one
+                // cycle per instruction
+                int slice = sliceLength(timer_left);
+                int status;
+                int ran = 0;
+                do {
+                    sliceOffset = ran;
+                    status = runOneInst();
+                    ran++;
+                } while (status == STAT_GO && ran < slice);
+                sliceOffset = 0;
+                counters.instructions += ran;
+
+                //Update the utilization for this process and its group.
+                scheduler.updateProcessUtilization(curProc, ran);
+
+                // on to the cycle of the last instruction, which is
+                // finished below like any other
+                scheduler.advanceClock(ran - 1);
+                timer_left -= ran - 1;
+
+                switch (status) {
+                    case STAT_GO:   // able to continue running
+                        break;
+
+                    case STAT_BLOCK:                    // blocking on I/O
+                        int delay = calcBlockWait();    // how long will this I/O take?
+
+                        log(EventLog.PROCESS_BLOCKED, curProc.getId(), delay);
+
+                        // @todo block the current process and schedule another
+                        scheduler.blockProcess(curProc, delay);
+                        curProc = loadNextProcess(curProc);
+                        break;
+
+                    case STAT_EXIT:     // process is finished
+                    case STAT_ERROR:    // run-time error found
+                        log(EventLog.PROCESS_EXITED, curProc.getId(), 0);
+                        // @todo stop the current process
+                        curProc.setExitCycle(scheduler.getClock());
+                        scheduler.removeProcess(curProc);
+                        cluster.processExited();
+                        curProc = loadNextProcess(null);
+                        break;
+                }
+            } else if (config.isEventDriven()) {
+                // nothing runs before the next timer interrupt, arrival or
+                // checkpoint, so skip straight to the cycle it happens on
+                long nextEvent = Math.min(nextArrival, nextCheckpoint);
+                int skip = (int) Math.min(timer_left, nextEvent - scheduler.getClock()) - 1;
+                scheduler.advanceClock(skip);
+                timer_left -= skip;
+            }
+
+            // timer interrupt?
+            timer_left--;
+            if (timer_left <= 0) {
+                // @todo timer interrupt happened
+                // tick-less, the running process carries on if nothing
+                // would replace it and no idle CPU is waiting for work
+                if (!config.isTickless() || curProc == null || stealRequest.get() != null
+                        || scheduler.isOutranked(curProc)) {
+                    curProc = loadNextProcess(curProc);
+                }
+
+                // reset timer
+                timer_left = config.getQuantum();
+            }
+
+            // @todo handle processes whose events have occurred
+            scheduler.updateBlockedProcesses();
+        }
+
+        timerLeft = timer_left;
+
+        // let the CPU's own thread finish
+        if (self != null) {
+            switchThread(null);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Publishes the clock to the other CPUs, and waits while it is more than
+     * a quantum ahead of the slowest of them, so that processes handed over
+     * and group utilization shared between the CPUs are counted on clocks
+     * that agree. The slowest CPU never waits, and every CPU stops at the
+     * same cycle for a checkpoint, so the CPUs cannot wait on each other.
+     */
+    private void keepPace() {
+        long clock = scheduler.getClock();
+        sharedClock.lazySet(clock);
+        if (clock <= clockLimit) return;
+
+        clockLimit = cluster.clockLimit(this, config.getQuantum());
+        while (clock > clockLimit && cluster.hasProcesses()) {
+            Thread.yield();
+            clockLimit = cluster.clockLimit(this, config.getQuantum());
+        }
+    }
+
+    /**
+     * Nothing but the running process and the processes waking up changes
+     * before the timer interrupt, the next arrival, checkpoint or decay, so
+     * the running process is run straight up to the first of them.
+     *
+     * @return The most cycles the running process may run for at once.
+     */
+    private int sliceLength(int timer_left) {
+        long nextEvent = Math.min(Math.min(nextArrival, nextCheckpoint), scheduler.getNextDecay());
+        return (int) Math.max(1, Math.min(timer_left, nextEvent - scheduler.getClock()));
+    }
+
+    /**
+     * Hands this CPU to the thread of the next process, or to the CPU's own
+     * thread if there is none. The calling thread must not touch the CPU
+     * afterwards.
+     */
+    private void switchThread(ScheduledProcess next) {
+        if (next == null) {
+            idle = true;
+            LockSupport.unpark(cpuThread);
+            return;
+        }
+
+        ProcessThread thread = next.getThread();
+        if (thread == null) {
+            thread = new ProcessThread(next);
+            next.setThread(thread);
+        }
+
+        thread.dispatch(this);
+    }
+
+    /**
+     * Writes the scheduler, the random number generator and the CPU
+     * registers. The CPU must be waiting for the checkpoint.
+     */
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        scheduler.writeCheckpoint(out);
+        rng.writeCheckpoint(out);
+
+        out.putInt(timerLeft);
+        out.putLong(nextArrival);
+        out.putInt(process != null ? process.getId() : -1);
+        out.putInt(instructionPointer);
+        out.putInt(pageStart);
+        out.putInt(pageEnd);
+        out.putLong(dispatchCycles);
+        out.putInt(readyCount);
+
+        Cpu thief = stealRequest.get();
+        out.putInt(thief != null ? thief.getId() : -1);
+    }
+
+    /**
+     * Reads the state written by writeCheckpoint, to resume from when run.
+     *
+     * @param images The program images, by index.
+     */
+    void readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images) throws IOException {
+        scheduler.readCheckpoint(in, images);
+        rng.readCheckpoint(in);
+
+        timerLeft   = in.getInt();
+        nextArrival = in.getLong();
+
+        int running = in.getInt();
+        if (running >= 0) {
+            restoreContext(scheduler.getProcess(running));
+        }
+
+        instructionPointer = in.getInt();
+        pageStart      = in.getInt();
+        pageEnd        = in.getInt();
+        dispatchCycles = in.getLong();
+        readyCount     = in.getInt();
+
+        int thief = in.getInt();
+        if (thief >= 0) {
+            stealRequest.set(cluster.getCpu(thief));
+        }
+
+        restored = true;
+    }
+
+    /**
+     * Execute one instruction and return STAT_GO, STAT_BLOCK,
+     * STAT_EXIT, or STAT_ERROR.
+     *
+     * Runs on the program decoded at load time, so the only checks left per
+     * instruction are whether the instruction pointer is legal and whether
+     * it is still on the same page.
+     *
+     * @return int
+     */
+    private int runOneInst() {
+        int addr = instructionPointer;
+
+        // check if the address is legal
+        if (addr < 0 || addr >= boundSize) {
+            log(EventLog.ILLEGAL_ADDRESS, -1, addr);
+            return STAT_ERROR;
+        }
+
+        // moved to another page?
+        if (addr < pageStart || addr >= pageEnd) {
+            touchPage(addr);
+        }
+
+        int inst = code[addr];
+        instructionPointer = addr + 1;
+
+        switch (inst & DecodedProgram.KIND_MASK) {
+            case DecodedProgram.BRANCH:
+                // skip the destination address
+                instructionPointer = addr + 3;
+
+                // determine if we should jump
+                if (rng.nextInt(100) < DecodedProgram.branchPercentage(inst)) {
+                    // yes, are branching
+                    instructionPointer = destinations[addr];
+                }
+                return STAT_GO;
+
+            case DecodedProgram.COMP:       // computation
+                return STAT_GO;
+
+            case DecodedProgram.BLOCK:      // blocking (input/output)
+                return STAT_BLOCK;
+
+            case DecodedProgram.EXIT:       // exit program
+                return STAT_EXIT;
+
+            case DecodedProgram.BAD_OPERAND:
+                log(EventLog.ILLEGAL_ADDRESS, -1, program.badOperandAddress(addr));
+                return STAT_ERROR;
+
+            default:                        // illegal instruction
+                log(EventLog.ILLEGAL_OPCODE, -1, program.readByte(addr));
+                return STAT_ERROR;
+        }
+    }
+
+    /**
+     * Makes the page holding an address resident.
+     */
+    private void touchPage(int addr) {
+        int page = addr >>> PagedMemory.PAGE_SHIFT;
+
+        if (memory.touch(process, page) != PagedMemory.HIT) {
+            log(EventLog.PAGE_FAULT, process.getId(), page);
+        }
+
+        pageStart = page << PagedMemory.PAGE_SHIFT;
+        pageEnd   = pageStart + PagedMemory.PAGE_SIZE;
+    }
+
+    /**
+     * Determine the number of clock cycles for this I/O operation.
+     *
+     * @return int
+     */
+    private int calcBlockWait() {
+        // calculate delay in cycles
+        return (int) (config.getIoMin() + config.getIoDev() * Math.abs(rng.nextGaussian()));
+    }
+
+    /**
+     * Load the next process into memory.
+     *
+     * @param prevProc The process being switched out, or null if it has exited.
+     * @return The process to execute next.
+     */
+    private ScheduledProcess loadNextProcess(ScheduledProcess prevProc) {
+        if(prevProc != null) {
+            saveContext(prevProc);
+        }
+
+        if(cluster.size() > 1) {
+            handOverWork();
+        }
+
+        ScheduledProcess curProc = scheduler.getNextProcess();
+
+        if(curProc != process) {
+            switchProcess(curProc);
+        }
+
+        if(curProc != null) {
+            // @todo move scheduling logic to separate method
+            restoreContext(curProc);
+
+            log(EventLog.PROCESS_LOADED, curProc.getId(), 0);
+        } else if(scheduler.hasProcesses()) {
+            log(EventLog.WAITING, -1, 0);
+        }
+
+        counters.publish(scheduler.getReadyCount(), scheduler.getBlockedCount());
+
+        if(cluster.size() > 1) {
+            readyCount = scheduler.getReadyCount();
+
+            if(curProc == null) {
+                cluster.requestWork(this);
+            }
+        }
+
+        // nothing to run here, let the other CPUs and any producer thread go
+        if(curProc == null && !scheduler.hasProcesses()) {
+            Thread.yield();
+        }
+
+        return curProc;
+    }
+
+    /**
+     * Accounts for the running process leaving the CPU and another one, if
+     * any, taking its place.
+     */
+    private void switchProcess(ScheduledProcess next) {
+        long clock = scheduler.getClock();
+
+        if(process != null) {
+            LongAdder groupCycles = process.getGroupCycles();
+            if(groupCycles == null) {
+                groupCycles = metrics.getGroupCycles(process.getGroupId());
+                process.setGroupCycles(groupCycles);
+            }
+            groupCycles.add(process.getCpuCycles() - dispatchCycles);
+
+            // waits from now if it is still ready
+            process.setReadyCycle(clock);
+            process = null;
+        }
+
+        if(next != null) {
+            counters.contextSwitches++;
+            counters.dispatchLatency.record(clock - next.getReadyCycle());
+            dispatchCycles = next.getCpuCycles();
+        }
+    }
+
+    /**
+     * Hands one ready process over to an idle CPU if one asked for it.
+     */
+    private void handOverWork() {
+        Cpu thief = stealRequest.get();
+        if(thief == null) return;
+
+        // keep at least one ready process for ourselves
+        if(scheduler.getReadyCount() > 1) {
+            thief.getScheduler().handOverProcess(scheduler.takeReadyProcess(), scheduler.getClock());
+        }
+
+        stealRequest.set(null);
+    }
+
+    private void log(int event, int process, int value) {
+        if(events != null) {
+            events.log(event, scheduler.getClock() + sliceOffset, process, value);
+        }
+    }
+
+    /**
+     * Save the CPU registers of the running process.
+     */
+    private void saveContext(ScheduledProcess proc) {
+        proc.setInstructionPointer(instructionPointer);
+    }
+
+    /**
+     * Load the CPU registers of the process about to run.
+     */
+    private void restoreContext(ScheduledProcess proc) {
+        process = proc;
+        instructionPointer = proc.getInstructionPointer();
+        boundSize = proc.getAddressSize();
+        program   = proc.getProgram();
+        code      = program.getCode();
+        destinations = program.getDestinations();
+
+        if (proc.getImage() != null) {
+            // touch the first page before running
+            pageStart = 0;
+            pageEnd   = 0;
+        } else {
+            // not paged
+            pageStart = Integer.MIN_VALUE;
+            pageEnd   = Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A set of simulated CPUs sharing one memory.
+ *
+ * Each CPU has its own scheduler holding its shard of the processes, and
+ * runs on its own thread. Every scheduler runs the same policy. The group
+ * utilization counters are shared by all the fair share schedulers so
+ * fair-share between groups holds across CPUs. An idle
+ * CPU asks the busiest CPU to hand over one of its ready processes.
+ *
+ * The CPUs' clocks move in bounded lock-step: a CPU more than a quantum
+ * ahead of the slowest other CPU waits for it to catch up, so a process
+ * handed over or a group's shared utilization is seen at about the same
+ * cycle by every CPU.
+ *
+ * While submissions are open, processes can be submitted from any thread
+ * and the CPUs keep running even when every process has exited. Processes
+ * from a trace are admitted by whichever CPU's clock reaches their arrival
+ * first, and submissions stay open until the trace ends.
+ *
+ * For a checkpoint, every CPU stops when its clock reaches the checkpoint
+ * cycle, and the last to arrive writes the checkpoint while the others
+ * wait.
+ *
+ * If a CPU fails, such as on a bad trace line, every CPU stops at its next
+ * cycle and the failure is thrown from run.
+ */
+class CpuCluster {
+    private Cpu[] cpus;
+    private AtomicInteger liveProcesses;
+    private volatile boolean submissionsOpen;
+
+    // first failure of any CPU, which stops them all
+    private AtomicReference<RuntimeException> failure;
+
+    // next CPU to hand a loaded process to
+    private AtomicInteger nextCpu;
+
+    // processes arriving while the CPUs run, or null
+    private TraceArrivals arrivals;
+
+    // group utilization counters shared by the schedulers
+    private ConcurrentHashMap<Integer, SharedUtilization> groupUtilization;
+
+    // CPUs still running, waiting for each other at every checkpoint, or null
+    private Phaser checkpoints;
+    private long checkpointInterval;
+
+    /**
+     * @param size    The number of CPUs.
+     * @param config  The simulation configuration.
+     * @param memory  The physical memory shared by the CPUs.
+     * @param metrics Live metrics the CPUs count into.
+     * @param rng     Random number generator. Each CPU beyond the first gets
+     *                its own generator split from it.
+     * @param log     Where the scheduler's actions are logged, or null.
+     */
+    CpuCluster(int size, SchedulerProcessConfiguration config, PagedMemory memory, SchedulerMetrics metrics,
+               SplitMixRandom rng, EventLog log) {
+        cpus = new Cpu[size];
+        liveProcesses = new AtomicInteger();
+        submissionsOpen = false;
+        failure = new AtomicReference<>();
+        nextCpu = new AtomicInteger();
+        groupUtilization = new ConcurrentHashMap<>();
+
+        if(size == 1) {
+            cpus[0] = new Cpu(0, this, scheduler(config, groupUtilization, rng), config, memory, metrics, rng,
+                    ring(log, 0));
+            return;
+        }
+
+        for(int i = 0; i < size; i++) {
+            cpus[i] = new Cpu(i, this, scheduler(config, groupUtilization, rng), config, memory, metrics,
+                    rng.split(), ring(log, i));
+        }
+    }
+
+    private static Scheduler scheduler(SchedulerProcessConfiguration config,
+                                       ConcurrentHashMap<Integer, SharedUtilization> groupUtilization,
+                                       SplitMixRandom rng) {
+        Scheduler scheduler = Scheduler.create(config.getSchedulerPolicy(), config.getQuantum(), groupUtilization,
+                rng);
+        scheduler.setDecayInterval(config.getDecayInterval());
+
+        for(Map.Entry<Integer, SchedulerProcessConfiguration.GroupSettings> group : config.getGroups().entrySet()) {
+            scheduler.setGroupShare(group.getKey(), group.getValue().share);
+        }
+
+        return scheduler;
+    }
+
+    private static EventLog.Ring ring(EventLog log, int cpu) {
+        return log != null ? log.newRing(cpu) : null;
+    }
+
+    int size() {
+        return cpus.length;
+    }
+
+    Cpu getCpu(int id) {
+        return cpus[id];
+    }
+
+    /**
+     * Takes a checkpoint every interval cycles while the CPUs run. Must be
+     * called before the CPUs start.
+     *
+     * @param interval The number of cycles between checkpoints.
+     * @param writer   Writes the checkpoint, while every CPU waits.
+     */
+    void setCheckpoints(long interval, Runnable writer) {
+        checkpointInterval = interval;
+        checkpoints = new Phaser(cpus.length) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                if(registeredParties > 0 && failure.get() == null) {
+                    writer.run();
+                }
+
+                return registeredParties == 0;
+            }
+        };
+    }
+
+    /**
+     * @return The clock cycle of the first checkpoint after the given one, or
+     * Long.MAX_VALUE if no checkpoints are taken.
+     */
+    long nextCheckpoint(long clock) {
+        return checkpoints != null ? (clock / checkpointInterval + 1) * checkpointInterval : Long.MAX_VALUE;
+    }
+
+    /**
+     * Waits for every running CPU to reach the checkpoint.
+     */
+    void checkpoint() {
+        checkpoints.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * Called by each CPU when it stops running, so the others no longer wait
+     * for it at checkpoints.
+     */
+    void cpuFinished() {
+        if(checkpoints != null) {
+            checkpoints.arriveAndDeregister();
+        }
+    }
+
+    /**
+     * Writes the state of every CPU. Every CPU must be waiting for the
+     * checkpoint.
+     */
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putInt(cpus.length);
+        out.putString(cpus[0].getScheduler().getPolicy());
+        out.putInt(liveProcesses.get());
+        out.putInt(nextCpu.get());
+        out.putBoolean(submissionsOpen);
+
+        boolean tracing = arrivals != null && !arrivals.isExhausted();
+        out.putBoolean(tracing);
+        if(tracing) {
+            arrivals.writeCheckpoint(out);
+        }
+
+        out.putInt(groupUtilization.size());
+        for(Map.Entry<Integer, SharedUtilization> group : groupUtilization.entrySet()) {
+            out.putInt(group.getKey());
+            group.getValue().writeCheckpoint(out);
+        }
+
+        for(Cpu cpu : cpus) {
+            cpu.writeCheckpoint(out);
+        }
+    }
+
+    /**
+     * Reads the state written by writeCheckpoint, for the CPUs to resume
+     * from. Must be called before the CPUs start.
+     *
+     * @param images     The program images, by index.
+     * @param simulation The simulation creating the processes still to arrive.
+     * @param config     The simulation configuration.
+     */
+    void readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images, Simulation simulation,
+                        SchedulerProcessConfiguration config) throws IOException {
+        int size = in.getInt();
+        if(size != cpus.length) {
+            throw new IllegalArgumentException("The checkpoint was taken with " + size + " CPUs, but " +
+                    cpus.length + " were given.");
+        }
+
+        String policy = in.getString();
+        if(!policy.equals(cpus[0].getScheduler().getPolicy())) {
+            throw new IllegalArgumentException("The checkpoint was taken with the " + policy + " scheduler, but " +
+                    cpus[0].getScheduler().getPolicy() + " was given.");
+        }
+
+        liveProcesses.set(in.getInt());
+        nextCpu.set(in.getInt());
+        submissionsOpen = in.getBoolean();
+
+        if(in.getBoolean()) {
+            arrivals = TraceArrivals.readCheckpoint(in, simulation, config);
+        }
+
+        int groups = in.getInt();
+        for(int i = 0; i < groups; i++) {
+            int groupId = in.getInt();
+            groupUtilization.put(groupId, SharedUtilization.readCheckpoint(in));
+        }
+
+        for(Cpu cpu : cpus) {
+            cpu.readCheckpoint(in, images);
+        }
+    }
+
+    /**
+     * Adds a process before the CPUs start, spreading the processes over the
+     * CPUs in turn.
+     */
+    void addProcess(ScheduledProcess process) {
+        liveProcesses.incrementAndGet();
+        nextScheduler().addProcess(process);
+    }
+
+    /**
+     * Submits a process from any thread while the CPUs are running.
+     *
+     * The process is counted before submissions are checked, so a CPU that
+     * sees them closed either sees the process too, or the process is
+     * refused.
+     *
+     * @throws IllegalStateException If submissions are closed.
+     */
+    void submitProcess(ScheduledProcess process) {
+        liveProcesses.incrementAndGet();
+        if(!submissionsOpen) {
+            liveProcesses.decrementAndGet();
+            throw new IllegalStateException("Process " + process.getId() + " submitted after submissions closed");
+        }
+
+        nextScheduler().submitProcess(process);
+    }
+
+    /**
+     * Admits processes from a trace as the CPUs reach their arrival cycles.
+     * Must be called before the CPUs start.
+     */
+    void setArrivals(TraceArrivals arrivals) {
+        this.arrivals = arrivals;
+        openSubmissions();
+    }
+
+    /**
+     * @return True if there is a trace to admit processes from.
+     */
+    boolean hasArrivals() {
+        return arrivals != null;
+    }
+
+    /**
+     * Admits every process from the trace that has arrived by a scheduler's
+     * clock into that scheduler. Must be called from its dispatching thread.
+     *
+     * @return The clock cycle of the next arrival, or Long.MAX_VALUE if the
+     * trace has ended.
+     */
+    long admitArrivals(Scheduler scheduler) {
+        ScheduledProcess process;
+        while((process = arrivals.poll(scheduler.getClock())) != null) {
+            liveProcesses.incrementAndGet();
+            scheduler.addProcess(process);
+        }
+
+        if(arrivals.isExhausted()) {
+            closeSubmissions();
+        }
+
+        return arrivals.getNextArrival();
+    }
+
+    /**
+     * Keeps the CPUs running until closeSubmissions is called, even when no
+     * processes are left.
+     */
+    void openSubmissions() {
+        submissionsOpen = true;
+    }
+
+    void closeSubmissions() {
+        submissionsOpen = false;
+    }
+
+    /**
+     * Number of clock cycles the simulation ran for, taken from the CPU whose
+     * clock got furthest.
+     */
+    long getClock() {
+        long clock = 0;
+        for(Cpu cpu : cpus) {
+            clock = Math.max(clock, cpu.getScheduler().getClock());
+        }
+
+        return clock;
+    }
+
+    void processExited() {
+        liveProcesses.decrementAndGet();
+    }
+
+    /**
+     * Determines if there are processes left on any CPU.
+     *
+     * @return True if processes are still around, or more may be submitted,
+     * and no CPU has failed.
+     */
+    boolean hasProcesses() {
+        return (liveProcesses.get() > 0 || submissionsOpen) && failure.get() == null;
+    }
+
+    /**
+     * Stops every CPU after one has failed. Only the first failure is kept.
+     */
+    void fail(RuntimeException e) {
+        failure.compareAndSet(null, e);
+    }
+
+    /**
+     * Asks the CPU with the most ready processes to hand one over to an idle
+     * CPU.
+     *
+     * @param thief The idle CPU.
+     */
+    void requestWork(Cpu thief) {
+        Cpu victim = null;
+
+        for(Cpu cpu : cpus) {
+            if(cpu != thief && cpu.getReadyCount() > 1 && (victim == null || cpu.getReadyCount() > victim.getReadyCount())) {
+                victim = cpu;
+            }
+        }
+
+        if(victim != null) {
+            victim.requestSteal(thief);
+        }
+    }
+
+    /**
+     * @param cpu       A running CPU.
+     * @param lookahead The most cycles a CPU may get ahead of the others.
+     * @return The clock cycle the CPU may run up to, lookahead cycles past
+     * the slowest of the other CPUs still running.
+     */
+    long clockLimit(Cpu cpu, long lookahead) {
+        long slowest = Long.MAX_VALUE;
+        for(Cpu other : cpus) {
+            if(other != cpu) {
+                slowest = Math.min(slowest, other.getSharedClock());
+            }
+        }
+
+        return slowest > Long.MAX_VALUE - lookahead ? Long.MAX_VALUE : slowest + lookahead;
+    }
+
+    private Scheduler nextScheduler() {
+        int cpu = Math.floorMod(nextCpu.getAndIncrement(), cpus.length);
+        return cpus[cpu].getScheduler();
+    }
+
+    /**
+     * Runs every CPU until all processes have exited. A single CPU runs on
+     * the calling thread.
+     *
+     * @throws RuntimeException The first failure of any CPU, once every CPU
+     *                          has stopped.
+     */
+    void run() throws InterruptedException {
+        if(cpus.length == 1) {
+            cpus[0].run();
+        } else {
+            Thread[] threads = new Thread[cpus.length];
+            for(int i = 0; i < cpus.length; i++) {
+                threads[i] = new Thread(cpus[i], "cpu-" + i);
+                threads[i].start();
+            }
+
+            for(Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        RuntimeException e = failure.get();
+        if(e != null) {
+            throw e;
+        }
+    }
+}
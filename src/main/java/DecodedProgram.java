@@ -0,0 +1,152 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A program image decoded once at load time.
+ *
+ * Every byte address of the image gets one instruction word holding the
+ * decoded instruction that starts at that address, so the interpreter never
+ * re-reads opcode or operand bytes. Branch destinations are resolved to
+ * plain addresses and branch operands are bounds-checked here, once,
+ * instead of on every execution.
+ *
+ * Instruction word layout:
+ *
+ *      bits 0-2    instruction kind
+ *      bits 3-9    branch percentage (branches only)
+ */
+class DecodedProgram {
+    static final int KIND_MASK = 0x7;
+
+    static final int COMP        = 1;   // computation
+    static final int BLOCK       = 2;   // blocking (input/output)
+    static final int EXIT        = 3;   // exit program
+    static final int BRANCH      = 4;   // branch with jump percentage
+    static final int BAD_OPCODE  = 5;   // illegal opcode
+    static final int BAD_OPERAND = 6;   // branch whose operands run past the end of the program
+
+    // opcodes in the program image
+    private static final int INST_COMP  = 1;    // computation
+    private static final int INST_BLOCK = 2;    // blocking (input/output)
+    private static final int INST_EXIT  = 3;    // exit program
+    private static final int INST_BR    = 128;  // Branch (128-228) with jump percentage
+
+    private int[] image;
+    private int[] code;
+    private int[] destinations;
+
+    /**
+     * Decodes a program that has been loaded into memory.
+     *
+     * @param memory      The memory the program is loaded in.
+     * @param baseAddress The address of the first byte of the program.
+     * @param size        The size of the program.
+     */
+    DecodedProgram(int[] memory, int baseAddress, int size) {
+        image = new int[size];
+        System.arraycopy(memory, baseAddress, image, 0, size);
+        decodeAll();
+    }
+
+    /**
+     * Decodes a program, keeping the array it was given as its image.
+     *
+     * @param image The program, one byte (0-255) per address.
+     */
+    DecodedProgram(int[] image) {
+        this.image = image;
+        decodeAll();
+    }
+
+    /**
+     * Decodes a program straight from its bytes, such as the code of a
+     * memory-mapped binary image, which are read once.
+     *
+     * @param bytes The program, from its position to its limit.
+     */
+    DecodedProgram(ByteBuffer bytes) {
+        image = new int[bytes.remaining()];
+        for (int addr = 0; addr < image.length; addr++) {
+            image[addr] = bytes.get(bytes.position() + addr) & 0xff;
+        }
+        decodeAll();
+    }
+
+    private void decodeAll() {
+        code = new int[image.length];
+        destinations = new int[image.length];
+        for (int addr = 0; addr < image.length; addr++) {
+            code[addr] = decode(addr);
+        }
+    }
+
+    private int decode(int addr) {
+        int opcode = image[addr];
+
+        // branch?
+        if (opcode >= INST_BR && opcode <= INST_BR + 100) {
+            if (addr + 2 >= image.length) {
+                return BAD_OPERAND;
+            }
+
+            // destination address is stored in big-endian order
+            destinations[addr] = (image[addr + 1] << 8) | image[addr + 2];
+            return BRANCH | ((opcode - INST_BR) << 3);
+        }
+
+        switch (opcode) {
+            case INST_COMP:
+                return COMP;
+            case INST_BLOCK:
+                return BLOCK;
+            case INST_EXIT:
+                return EXIT;
+            default:
+                return BAD_OPCODE;
+        }
+    }
+
+    /**
+     * @return The decoded instruction words, one per byte address.
+     */
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * @return The branch destinations, indexed by the address of the branch.
+     */
+    int[] getDestinations() {
+        return destinations;
+    }
+
+    int size() {
+        return code.length;
+    }
+
+    /**
+     * @return The raw bytes of the program, one per address. Not to be
+     * changed.
+     */
+    int[] getImage() {
+        return image;
+    }
+
+    /**
+     * @return The raw byte stored at the given address.
+     */
+    int readByte(int addr) {
+        return image[addr];
+    }
+
+    static int branchPercentage(int inst) {
+        return (inst >>> 3) & 0x7f;
+    }
+
+    /**
+     * @return The first address past the end of the program that a
+     * BAD_OPERAND branch at the given address tries to read.
+     */
+    int badOperandAddress(int addr) {
+        return addr + 1 < image.length ? addr + 2 : addr + 1;
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log of the scheduler's actions.
+ *
+ * Each CPU writes fixed-size records into its own preallocated ring buffer,
+ * which costs a few array stores and no allocation. A background thread
+ * drains the rings and formats the records as text, CSV or binary, so the
+ * simulation threads never do I/O themselves. A CPU only waits if the
+ * writer falls a whole ring behind.
+ *
+ * If writing fails, the writer stops, later events are dropped rather than
+ * waited on, and the failure is thrown from close.
+ *
+ * Binary records are big-endian: int event, int cpu, long cycle,
+ * int process, int value.
+ */
+class EventLog {
+    // event types
+    static final int PROCESS_LOADED  = 1;
+    static final int PROCESS_BLOCKED = 2;   // value: delay
+    static final int PROCESS_EXITED  = 3;
+    static final int WAITING         = 4;
+    static final int ILLEGAL_ADDRESS = 5;   // value: address
+    static final int ILLEGAL_OPCODE  = 6;   // value: opcode
+    static final int PAGE_FAULT      = 7;   // value: virtual page
+
+    // verbosity levels
+    static final int VERBOSITY_SILENT = 0;
+    static final int VERBOSITY_EXITS  = 1;  // exits and run-time errors
+    static final int VERBOSITY_SWITCH = 2;  // plus loads and blocks
+    static final int VERBOSITY_ALL    = 3;  // plus idle CPUs
+    static final int VERBOSITY_MEMORY = 4;  // plus page faults
+
+    static final String FORMAT_TEXT   = "text";
+    static final String FORMAT_CSV    = "csv";
+    static final String FORMAT_BINARY = "binary";
+
+    // records per ring
+    private static final int RING_SIZE = 1 << 14;
+
+    // longs per record: event, cycle, process, value
+    private static final int RECORD_SIZE = 4;
+
+    /**
+     * One CPU's ring buffer. Only that CPU may write to it.
+     */
+    class Ring {
+        private int cpu;
+        private long[] records;
+        private AtomicLong head;    // next record to be read
+        private AtomicLong tail;    // next record to be written
+
+        Ring(int cpu) {
+            this.cpu     = cpu;
+            this.records = new long[RING_SIZE * RECORD_SIZE];
+            this.head    = new AtomicLong();
+            this.tail    = new AtomicLong();
+        }
+
+        void log(int event, long cycle, int process, int value) {
+            if(level(event) > verbosity) return;
+
+            long t = tail.get();
+            while(t - head.get() >= RING_SIZE) {
+                // the writer is a full ring behind, or has stopped
+                if(failure != null) return;
+                Thread.yield();
+            }
+
+            int i = (int) (t & (RING_SIZE - 1)) * RECORD_SIZE;
+            records[i]     = event;
+            records[i + 1] = cycle;
+            records[i + 2] = process;
+            records[i + 3] = value;
+            tail.lazySet(t + 1);
+        }
+
+        /**
+         * Writes out everything logged so far.
+         *
+         * @return False if there was nothing to write.
+         */
+        private boolean drain() throws IOException {
+            long h = head.get();
+            long t = tail.get();
+            if(h == t) return false;
+
+            for(; h < t; h++) {
+                int i = (int) (h & (RING_SIZE - 1)) * RECORD_SIZE;
+                write(cpu, (int) records[i], records[i + 1], (int) records[i + 2], (int) records[i + 3]);
+            }
+
+            head.lazySet(t);
+            return true;
+        }
+    }
+
+    private String format;
+    private int verbosity;
+    private ArrayList<Ring> rings;
+    private PrintStream text;
+    private DataOutputStream binary;
+    private Thread writer;
+    private volatile boolean closed;
+
+    // why the writer stopped before the log was closed, if it did
+    private volatile IOException failure;
+
+    EventLog(OutputStream out, String format, int verbosity) {
+        this.format    = format;
+        this.verbosity = verbosity;
+        this.rings     = new ArrayList<>();
+
+        if(FORMAT_BINARY.equals(format)) {
+            binary = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        } else {
+            text = new PrintStream(new BufferedOutputStream(out, 1 << 16), false);
+
+            if(FORMAT_CSV.equals(format)) {
+                text.println("cycle,cpu,event,process,value");
+            }
+        }
+    }
+
+    /**
+     * Creates the ring buffer for one CPU. All rings must be created before
+     * the log is started.
+     */
+    Ring newRing(int cpu) {
+        Ring ring = new Ring(cpu);
+        rings.add(ring);
+        return ring;
+    }
+
+    void start() {
+        writer = new Thread(this::drainUntilClosed, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes out everything left in the rings and stops the writer. A log
+     * never started has nothing to write.
+     *
+     * @throws IOException If writing failed, in which case the events
+     *                     logged from then on were dropped.
+     */
+    void close() throws InterruptedException, IOException {
+        closed = true;
+        if(writer == null) return;
+
+        writer.join();
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drainUntilClosed() {
+        try {
+            while(true) {
+                boolean wasClosed = closed;
+                boolean wrote = false;
+
+                for(Ring ring : rings) {
+                    wrote |= ring.drain();
+                }
+
+                if(!wrote) {
+                    if(wasClosed) break;
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+
+            flush();
+        } catch(IOException e) {
+            failure = e;
+        } catch(RuntimeException e) {
+            failure = new IOException("Error writing event log", e);
+        }
+    }
+
+    private void flush() throws IOException {
+        if(binary != null) {
+            binary.flush();
+        } else if(text.checkError()) {
+            // PrintStream keeps its errors to itself
+            throw new IOException("Error writing event log");
+        }
+    }
+
+    private void write(int cpu, int event, long cycle, int process, int value) throws IOException {
+        if(binary != null) {
+            binary.writeInt(event);
+            binary.writeInt(cpu);
+            binary.writeLong(cycle);
+            binary.writeInt(process);
+            binary.writeInt(value);
+        } else if(FORMAT_CSV.equals(format)) {
+            text.println(cycle + "," + cpu + "," + name(event) + "," + process + "," + value);
+        } else {
+            if(rings.size() > 1) {
+                text.print("CPU " + cpu + ": ");
+            }
+
+            text.println(describe(event, process, value));
+        }
+    }
+
+    private static String describe(int event, int process, int value) {
+        switch(event) {
+            case PROCESS_LOADED:
+                return "Process loaded: " + process;
+            case PROCESS_BLOCKED:
+                return "Process " + process + " blocked for " + value + " cycles.";
+            case PROCESS_EXITED:
+                return "Process " + process + " exiting";
+            case WAITING:
+                return "Waiting for processes to unblock.";
+            case ILLEGAL_ADDRESS:
+                return "Illegal address " + value;
+            case PAGE_FAULT:
+                return "Process " + process + " page fault on page " + value;
+            default:
+                return "Illegal opcode: " + value;
+        }
+    }
+
+    private static String name(int event) {
+        switch(event) {
+            case PROCESS_LOADED:
+                return "loaded";
+            case PROCESS_BLOCKED:
+                return "blocked";
+            case PROCESS_EXITED:
+                return "exited";
+            case WAITING:
+                return "waiting";
+            case ILLEGAL_ADDRESS:
+                return "illegal_address";
+            case PAGE_FAULT:
+                return "page_fault";
+            default:
+                return "illegal_opcode";
+        }
+    }
+
+    private static int level(int event) {
+        switch(event) {
+            case PROCESS_EXITED:
+            case ILLEGAL_ADDRESS:
+            case ILLEGAL_OPCODE:
+                return VERBOSITY_EXITS;
+            case WAITING:
+                return VERBOSITY_ALL;
+            case PAGE_FAULT:
+                return VERBOSITY_MEMORY;
+            default:
+                return VERBOSITY_SWITCH;
+        }
+    }
+}
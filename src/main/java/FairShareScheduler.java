@@ -1,25 +1,112 @@
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Map;
 
-class FairShareScheduler {
-    private HashMap<Integer, ScheduledProcess> processes;
-    private HashMap<Integer, Integer> groupUtilization;
+/**
+ * The fair share policy: a process's priority worsens with its own
+ * utilization and that of its group and every group above it, and the
+ * process with the best priority runs next. See selectNext.
+ */
+class FairShareScheduler extends AbstractScheduler {
+    private IntHashMap<ProcessGroup> groups;
+
+    /**
+     * Groups at the top that have at least one ready process in them,
+     * ordered by the priority of their best ready process.
+     */
+    private IndexedHeap<ProcessGroup> readyGroups;
+
+    /**
+     * Group utilization counters shared with the other CPUs' schedulers, or
+     * null when this scheduler runs alone.
+     */
+    private Map<Integer, SharedUtilization> sharedGroupUtilization;
+
+    // counts calls to refreshGroupUtilization
+    private int refreshRound;
+
+    /**
+     * Utilization is halved every decay interval.
+     *
+     * A decay only starts a new epoch. Processes and groups catch up with
+     * the epoch lazily when they are next touched. The groups, whose order
+     * the decay may have changed, are caught up and reordered once at the
+     * next dispatch, which costs O(groups). The ready processes keep their
+     * order through a decay, and are only caught up as they are charged or
+     * wake up, so no decay costs O(processes).
+     */
+    private boolean decayPending;
 
     FairShareScheduler() {
-        processes  = new HashMap<>();
-        groupUtilization = new HashMap<>();
+        this(null);
+    }
+
+    FairShareScheduler(Map<Integer, SharedUtilization> sharedGroupUtilization) {
+        this.sharedGroupUtilization = sharedGroupUtilization;
+        groups      = new IntHashMap<>();
+        readyGroups = new IndexedHeap<>(ProcessGroup::compareGroups);
+    }
+
+    @Override
+    public String getPolicy() {
+        return FAIR_SHARE;
+    }
+
+    /**
+     * The smaller the share, the more the group's utilization counts against
+     * the priority of its processes.
+     */
+    @Override
+    public void setGroupShare(int groupId, double share) {
+        super.setGroupShare(groupId, share);
+
+        ProcessGroup group = groups.get(groupId);
+        if(group != null) {
+            group.setShare(share);
+            propagate(group);
+        }
     }
 
-    void addProcess(ScheduledProcess process) {
-        processes.put(process.getId(), process);
+    /**
+     * Updates a process's utilization, and that of its group and the groups
+     * above it. Costs O(depth + log n) at most for n ready processes in the
+     * group, whatever the number of groups or cycles.
+     * @param p
+     */
+    @Override
+    public void updateProcessUtilization(ScheduledProcess p, int cycles) {
+        ProcessGroup group = p.getGroup();
+
+        //Catch up with any decay first
+        p.decayTo(getEpoch());
+        int processPriority = p.getProcessPriority();
+
+        //Increment the process's utilization
+        p.incrementUtilization(cycles);
+        group.updateReadyProcess(p);
+
+        //Increment the utilization of the process's group and the groups above
+        //it, requeueing them as far as a priority changes
+        boolean changed = p.getProcessPriority() != processPriority;
+        for(ProcessGroup g = group; g != null; g = g.getParent()) {
+            int offset = g.getPriorityOffset();
+            if(decayPending) {
+                g.decayTo(getEpoch());
+            }
 
-        if(!groupUtilization.containsKey(process.getGroupId())) {
-            groupUtilization.put(process.getGroupId(), 1);
+            g.incrementUtilization(cycles);
+            changed = (changed || g.getPriorityOffset() != offset) && requeue(g);
         }
     }
 
-    void removeProcess(ScheduledProcess p) {
-        processes.remove(p.getId());
+    /**
+     * A group joins the groups above it when it is created, as its first
+     * process gives them. The process's path is not checked against a group
+     * already there.
+     */
+    @Override
+    protected void admit(ScheduledProcess process) {
+        int[] path = process.getGroupPath();
+        process.setGroup(getGroup(process.getGroupId(), path, path.length));
     }
 
     /**
@@ -34,67 +121,267 @@ class FairShareScheduler {
      *      groupUtil = (i - 1) / 2.
      *      Priority  = BASE_PRIORITY + (procUtil / 2) + (groupUtil / 2) + weight.
      *
-     * See Page 423 of textbook for more information.
+     * See Page 423 of textbook for more information. With decay on, i is
+     * halved every decay interval, as in the textbook. With nested groups,
+     * each group on the process's path adds its own share.
+     *
+     * The group's share of the priority is the same for every process in
+     * the group, so each group keeps its ready processes in trees ordered by
+     * the process's own share (see ReadyTree), and the groups are kept in a
+     * heap ordered by the priority of their best process, at every level.
+     * Ties go to the smallest process ID.
      *
      * @return The process to be executed next.
      */
-    ScheduledProcess getNextProcess() {
-        ScheduledProcess minProcess = null;
-        Integer minProcessPriority = null;
+    @Override
+    protected ScheduledProcess selectNext() {
+        if(decayPending) {
+            applyDecay();
+        }
 
-        for(Map.Entry<Integer, ScheduledProcess> map : processes.entrySet()) {
-            //Fetch the process and calculate its priority
-            ScheduledProcess p = map.getValue();
+        if(sharedGroupUtilization != null) {
+            refreshGroupUtilization();
+        }
 
-            //Skip blocked processes
-            if(p.isBlocked()) continue;
+        ProcessGroup group = readyGroups.peek();
+        return group != null ? group.getBestProcess() : null;
+    }
 
-            int pPriority = p.calculatePriority(groupUtilization.get(p.getGroupId()));
+    /**
+     * The process is charged every cycle, so its priority is up to date.
+     */
+    @Override
+    protected boolean isOutranked(ScheduledProcess p, long cycles) {
+        return selectNext() != p;
+    }
 
-            //Set the process with the smallest priority value
-            // (smaller values have a higher priority).
-            if(minProcess == null) {
-                minProcess = p;
-                minProcessPriority = pPriority;
-            } else {
-                if(pPriority < minProcessPriority) {
-                    minProcess = p;
-                    minProcessPriority = pPriority;
-                }
+    /**
+     * The last process of a group at the heap leaves is taken, which tends
+     * to be a process this scheduler would not run soon anyway.
+     */
+    @Override
+    protected ScheduledProcess selectVictim() {
+        if(decayPending) {
+            applyDecay();
+        }
+
+        ProcessGroup group = readyGroups.get(readyGroups.size() - 1);
+        while(!group.hasReadyProcesses()) {
+            IndexedHeap<ProcessGroup> children = group.getReadyChildren();
+            group = children.get(children.size() - 1);
+        }
+
+        return group.getLastReadyProcess();
+    }
+
+    /**
+     * Costs the same however many processes and groups there are.
+     */
+    @Override
+    protected void decay() {
+        decayPending = true;
+    }
+
+    /**
+     * Writes the decay state and the groups, with the group each is in.
+     */
+    @Override
+    protected void writePolicyCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putBoolean(decayPending);
+
+        out.putInt(groups.size());
+        for(int slot = 0; slot < groups.capacity(); slot++) {
+            ProcessGroup group = groups.valueAt(slot);
+            if(group == null) continue;
+
+            out.putInt(group.getId());
+            out.putBoolean(group.getParent() != null);
+            out.putInt(group.getParent() != null ? group.getParent().getId() : 0);
+            group.writeCheckpoint(out);
+        }
+    }
+
+    @Override
+    protected void readPolicyCheckpoint(Checkpoint.Reader in) throws IOException {
+        decayPending = in.getBoolean();
+
+        int groupCount = in.getInt();
+        int[] parentIds = new int[groupCount];
+        ProcessGroup[] read = new ProcessGroup[groupCount];
+        for(int i = 0; i < groupCount; i++) {
+            int groupId = in.getInt();
+            boolean hasParent = in.getBoolean();
+            int parentId = in.getInt();
+
+            ProcessGroup group = groups.get(groupId);
+            if(group == null) {
+                group = createGroup(groupId, null);
+                groups.put(groupId, group);
+            }
+            group.readCheckpoint(in);
+
+            if(hasParent && group.getParent() == null) {
+                read[i] = group;
+                parentIds[i] = parentId;
+            }
+        }
+
+        // a group without processes is created without the group it is in,
+        // which may come later in the checkpoint
+        for(int i = 0; i < groupCount; i++) {
+            if(read[i] != null) {
+                read[i].setParent(groups.get(parentIds[i]));
             }
         }
 
-        return minProcess;
+        // the groups were queued before their utilization was read
+        rebuild(readyGroups);
     }
 
     /**
-     * Updates a process's utilization.
-     * @param p
+     * @param path  The IDs of the groups above the group, outermost first.
+     * @param depth The number of groups above it.
+     * @return The group, created along with any missing above it.
      */
-    void updateProcessUtilization(ScheduledProcess p) {
-        //Increment the process's utilization
-        p.incrementUtilization();
+    private ProcessGroup getGroup(int groupId, int[] path, int depth) {
+        ProcessGroup group = groups.get(groupId);
+        if(group == null) {
+            ProcessGroup parent = depth > 0 ? getGroup(path[depth - 1], path, depth - 1) : null;
+
+            group = createGroup(groupId, parent);
+            groups.put(groupId, group);
+        }
+
+        return group;
+    }
+
+    private ProcessGroup createGroup(int groupId, ProcessGroup parent) {
+        ProcessGroup group;
 
-        //Increment process group's utilization
-        groupUtilization.replace(p.getGroupId(), groupUtilization.get(p.getGroupId()) + 1);
+        if(sharedGroupUtilization == null) {
+            group = new ProcessGroup(groupId, parent, null);
+        } else {
+            SharedUtilization shared = sharedGroupUtilization.computeIfAbsent(groupId, id -> new SharedUtilization());
+
+            group = new ProcessGroup(groupId, parent, shared);
+        }
+
+        group.setShare(getGroupShare(groupId));
+
+        return group;
     }
 
     /**
-     * Decrements the block time of each process in the queue.
+     * Picks up the utilization other CPUs have added to the groups on the
+     * path of the best process, until refreshing that path leaves the same
+     * process best. Between decays the shared counters only grow, so a group
+     * not refreshed can only look better than it is, and needs refreshing
+     * only once its process is best. Each group is refreshed at most once
+     * per call, so this usually costs O(depth) rather than O(groups).
      */
-    void updateBlockedProcesses() {
-        for(Map.Entry<Integer, ScheduledProcess> map : processes.entrySet()) {
-            ScheduledProcess p = map.getValue();
-            p.decrementBlockTime();
+    private void refreshGroupUtilization() {
+        refreshRound++;
+
+        ProcessGroup top = readyGroups.peek();
+        while(top != null) {
+            ScheduledProcess best = top.getBestProcess();
+            for(ProcessGroup g = best.getGroup(); g != null; g = g.getParent()) {
+                if(g.refreshUtilization(refreshRound)) {
+                    propagate(g);
+                }
+            }
+
+            top = readyGroups.peek();
+            if(top == null || top.getBestProcess() == best) break;
         }
     }
 
     /**
-     * Determines if there are processes to be executed.
+     * Moves a group in its parent's heap, or the top heap, after its best
+     * process may have changed, adding or removing it as it gains or loses
+     * its last ready process.
      *
-     * @return True if processes are still in the queue.
+     * @return True if the group's best process or its priority has changed.
+     */
+    private boolean requeue(ProcessGroup group) {
+        boolean changed = group.updateBest(getEpoch());
+        IndexedHeap<ProcessGroup> siblings = group.getParent() != null ? group.getParent().getReadyChildren()
+                : readyGroups;
+
+        if(group.getBestProcess() == null) {
+            if(siblings.contains(group)) {
+                siblings.remove(group);
+            }
+        } else if(!siblings.contains(group)) {
+            siblings.add(group);
+        } else if(changed) {
+            siblings.update(group);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Requeues a group, and the groups above it for as long as their best
+     * process changes.
+     */
+    private void propagate(ProcessGroup group) {
+        while(group != null && requeue(group)) {
+            group = group.getParent();
+        }
+    }
+
+    /**
+     * Recomputes the best process of every group in a heap and the groups in
+     * them, innermost first, and reorders the heaps.
+     */
+    private void rebuild(IndexedHeap<ProcessGroup> heap) {
+        for(int i = 0; i < heap.size(); i++) {
+            ProcessGroup group = heap.get(i);
+
+            rebuild(group.getReadyChildren());
+            group.updateBest(getEpoch());
+        }
+
+        heap.rebuild();
+    }
+
+    /**
+     * Brings the groups up to the current epoch, and reorders the group
+     * heaps. The ready processes are left behind, since their trees give the
+     * best of them as of the epoch as they are.
      */
-    boolean hasProcesses() {
-        return processes.size() > 0;
+    private void applyDecay() {
+        decayPending = false;
+
+        for(int slot = 0; slot < groups.capacity(); slot++) {
+            ProcessGroup group = groups.valueAt(slot);
+            if(group != null) {
+                group.decayTo(getEpoch());
+            }
+        }
+
+        rebuild(readyGroups);
+    }
+
+    @Override
+    protected void enqueue(ScheduledProcess p) {
+        ProcessGroup group = p.getGroup();
+
+        // blocked processes catch up with decay when they wake
+        p.decayTo(getEpoch());
+        group.addReadyProcess(p);
+
+        propagate(group);
+    }
+
+    @Override
+    protected boolean dequeue(ScheduledProcess p) {
+        ProcessGroup group = p.getGroup();
+        if(!group.removeReadyProcess(p)) return false;
+
+        propagate(group);
+
+        return true;
     }
 }
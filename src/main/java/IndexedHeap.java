@@ -0,0 +1,151 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Addressable binary min-heap.
+ *
+ * Every entry remembers its own slot in the heap, so an entry whose key has
+ * changed can be re-positioned (or removed) in O(log n) without searching.
+ * An entry can only live in one heap at a time.
+ *
+ * @param <T> The type of entry stored in the heap.
+ */
+class IndexedHeap<T extends IndexedHeap.Entry> {
+    interface Entry {
+        int getHeapIndex();
+
+        void setHeapIndex(int heapIndex);
+    }
+
+    private Entry[] entries;
+    private int size;
+    private Comparator<? super T> comparator;
+
+    IndexedHeap(Comparator<? super T> comparator) {
+        this.entries    = new Entry[16];
+        this.size       = 0;
+        this.comparator = comparator;
+    }
+
+    void add(T entry) {
+        if(size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+
+        entries[size] = entry;
+        entry.setHeapIndex(size);
+        size++;
+        siftUp(size - 1);
+    }
+
+    void remove(T entry) {
+        int index = entry.getHeapIndex();
+        entry.setHeapIndex(-1);
+        size--;
+
+        if(index != size) {
+            //Fill the hole with the last entry and restore the heap order
+            entries[index] = entries[size];
+            entries[index].setHeapIndex(index);
+            entries[size] = null;
+
+            if(!siftUp(index)) {
+                siftDown(index);
+            }
+        } else {
+            entries[size] = null;
+        }
+    }
+
+    /**
+     * Re-positions an entry after its key has changed.
+     *
+     * @param entry The entry whose key has changed.
+     */
+    void update(T entry) {
+        int index = entry.getHeapIndex();
+
+        if(!siftUp(index)) {
+            siftDown(index);
+        }
+    }
+
+    /**
+     * Restores the heap order after the keys of any number of entries have
+     * changed, in O(n).
+     */
+    void rebuild() {
+        for(int index = (size >>> 1) - 1; index >= 0; index--) {
+            siftDown(index);
+        }
+    }
+
+    boolean contains(T entry) {
+        int index = entry.getHeapIndex();
+        return index >= 0 && index < size && entries[index] == entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    T peek() {
+        return size > 0 ? (T) entries[0] : null;
+    }
+
+    /**
+     * Fetches the entry in a given slot of the heap. Slot 0 is the minimum,
+     * the last slot is one of the leaves.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int index) {
+        return (T) entries[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(int a, int b) {
+        return comparator.compare((T) entries[a], (T) entries[b]);
+    }
+
+    private boolean siftUp(int index) {
+        int start = index;
+
+        while(index > 0) {
+            int parent = (index - 1) >>> 1;
+            if(compare(index, parent) >= 0) break;
+
+            swap(index, parent);
+            index = parent;
+        }
+
+        return index != start;
+    }
+
+    private void siftDown(int index) {
+        while(true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if(left < size && compare(left, smallest) < 0) smallest = left;
+            if(right < size && compare(right, smallest) < 0) smallest = right;
+            if(smallest == index) return;
+
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Entry tmp = entries[a];
+        entries[a] = entries[b];
+        entries[b] = tmp;
+        entries[a].setHeapIndex(a);
+        entries[b].setHeapIndex(b);
+    }
+}
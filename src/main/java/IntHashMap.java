@@ -0,0 +1,146 @@
+/**
+ * Map from int keys to objects, using open addressing with linear probing.
+ *
+ * Keys are stored unboxed, so lookups, inserts of existing keys and removals
+ * never allocate. The values can be walked slot by slot without an iterator:
+ *
+ *      for(int slot = 0; slot < map.capacity(); slot++) {
+ *          V value = map.valueAt(slot);
+ *          if(value == null) continue;
+ *          ...
+ *      }
+ *
+ * @param <V> The type of value stored in the map.
+ */
+class IntHashMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    IntHashMap() {
+        keys   = new int[16];
+        values = new Object[16];
+        size   = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+
+        for(int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+
+        return null;
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param value The value to store, which must not be null.
+     */
+    void put(int key, V value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        for(; values[slot] != null; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+
+        keys[slot]   = key;
+        values[slot] = value;
+        size++;
+
+        // keep the table at most half full
+        if(size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    void remove(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        for(; values[slot] != null; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) break;
+        }
+
+        if(values[slot] == null) return;
+
+        // shift the following entries of the probe sequence back into the hole
+        int hole = slot;
+        for(slot = (slot + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            int home = hash(keys[slot]) & mask;
+
+            // move the entry if its home slot is not between the hole and it
+            if(((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole]   = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+
+        values[hole] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of slots, for walking the values.
+     */
+    int capacity() {
+        return values.length;
+    }
+
+    /**
+     * @return The value in a slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys   = new int[capacity];
+        values = new Object[capacity];
+        size   = 0;
+
+        for(int slot = 0; slot < oldValues.length; slot++) {
+            if(oldValues[slot] != null) {
+                reinsert(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void reinsert(int key, Object value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while(values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot]   = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private static int hash(int key) {
+        // spread sequential IDs over the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Histogram of non-negative values with bounded relative error, in the
+ * style of HdrHistogram.
+ *
+ * Values below 64 are counted exactly. Larger values are grouped by their
+ * highest set bit, and each group is split into 32 linear sub-buckets, so
+ * every value is recorded to within about 3% of itself. Recording is a few
+ * shifts and one array increment, with no allocation.
+ *
+ * Only one thread may record. Other threads may read at any time and see
+ * counts that are slightly out of date.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts;
+    private long count;
+    private long sum;
+    private long max;
+
+    LatencyHistogram() {
+        counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    }
+
+    void record(long value) {
+        if(value < 0) value = 0;
+
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if(value > max) max = value;
+    }
+
+    /**
+     * Adds another histogram's counts to this one.
+     */
+    void add(LatencyHistogram other) {
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+
+        count += other.count;
+        sum   += other.sum;
+        max    = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * @param quantile Between 0 and 1.
+     * @return The largest value recorded in the bucket holding the quantile.
+     */
+    long getValueAtQuantile(double quantile) {
+        if(count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    private static int index(long value) {
+        if(value < 2 * SUB_BUCKETS) return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int index) {
+        if(index < 2 * SUB_BUCKETS) return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
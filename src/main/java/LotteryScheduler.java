@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Lottery scheduling: at every dispatch one of the ready processes' tickets
+ * is drawn at random, and the process holding it runs. Each process gets
+ * the CPU in proportion to its tickets, in expectation.
+ *
+ * The ready processes sit in a dense array of slots, with a Fenwick tree
+ * over their tickets, so drawing the winner, adding a process and removing
+ * one all take O(log n). A process removed from the middle is replaced by
+ * the one in the last slot.
+ */
+class LotteryScheduler extends AbstractScheduler {
+    private SplitMixRandom rng;
+
+    // ready processes, and the Fenwick tree of their tickets, 1-based
+    private ScheduledProcess[] slots;
+    private long[] tree;
+    private int size;
+    private long totalTickets;
+
+    LotteryScheduler(SplitMixRandom rng) {
+        this.rng   = rng;
+        this.slots = new ScheduledProcess[16];
+        this.tree  = new long[slots.length + 1];
+    }
+
+    @Override
+    public String getPolicy() {
+        return LOTTERY;
+    }
+
+    @Override
+    protected void admit(ScheduledProcess p) {
+        p.setTickets(getTickets(p));
+    }
+
+    @Override
+    protected void enqueue(ScheduledProcess p) {
+        if(size == slots.length) {
+            grow();
+        }
+
+        place(p, size++);
+        totalTickets += p.getTickets();
+    }
+
+    @Override
+    protected boolean dequeue(ScheduledProcess p) {
+        int slot = p.getSlot();
+        if(slot < 0) return false;
+
+        add(slot, -p.getTickets());
+        p.setSlot(-1);
+        totalTickets -= p.getTickets();
+        size--;
+
+        //Fill the hole with the last process
+        ScheduledProcess last = slots[size];
+        slots[size] = null;
+        if(slot != size) {
+            add(size, -last.getTickets());
+            place(last, slot);
+        }
+
+        return true;
+    }
+
+    @Override
+    protected ScheduledProcess selectNext() {
+        if(size == 0) return null;
+
+        return slots[find(rng.nextLong(totalTickets))];
+    }
+
+    /**
+     * Any other ready process may win the next draw.
+     */
+    @Override
+    protected boolean isOutranked(ScheduledProcess p, long cycles) {
+        return true;
+    }
+
+    @Override
+    protected ScheduledProcess selectVictim() {
+        return slots[size - 1];
+    }
+
+    /**
+     * Writes the random number generator and the order of the slots, which
+     * decides the process a ticket drawn belongs to.
+     */
+    @Override
+    protected void writePolicyCheckpoint(Checkpoint.Writer out) throws IOException {
+        rng.writeCheckpoint(out);
+
+        out.putInt(size);
+        for(int slot = 0; slot < size; slot++) {
+            out.putInt(slots[slot].getId());
+        }
+    }
+
+    @Override
+    protected void readPolicyCheckpoint(Checkpoint.Reader in) throws IOException {
+        rng.readCheckpoint(in);
+
+        Arrays.fill(slots, null);
+        Arrays.fill(tree, 0);
+
+        size = in.getInt();
+        for(int slot = 0; slot < size; slot++) {
+            place(getProcess(in.getInt()), slot);
+        }
+    }
+
+    private void place(ScheduledProcess p, int slot) {
+        slots[slot] = p;
+        p.setSlot(slot);
+        add(slot, p.getTickets());
+    }
+
+    /**
+     * Adds to the tickets of one slot.
+     */
+    private void add(int slot, long tickets) {
+        for(int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += tickets;
+        }
+    }
+
+    /**
+     * @param ticket Between 0 and the total number of tickets.
+     * @return The slot of the process holding the ticket, counting the
+     * tickets of the slots in order.
+     */
+    private int find(long ticket) {
+        int i = 0;
+        for(int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            if(i + step < tree.length && tree[i + step] <= ticket) {
+                i += step;
+                ticket -= tree[i];
+            }
+        }
+
+        return i;
+    }
+
+    private void grow() {
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        tree  = new long[slots.length + 1];
+
+        for(int slot = 0; slot < size; slot++) {
+            add(slot, slots[slot].getTickets());
+        }
+    }
+}
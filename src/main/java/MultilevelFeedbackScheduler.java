@@ -0,0 +1,252 @@
+import java.io.IOException;
+
+/**
+ * Multilevel feedback queue: the first process of the highest non-empty
+ * level runs, and the processes of a level take turns. A process starts on
+ * the highest level and moves one level down once it has run for its
+ * level's allotment, which doubles with every level, so CPU-bound processes
+ * sink and I/O-bound ones stay on top. Time used counts whether or not the
+ * process blocked in between.
+ *
+ * Each level is a list threaded through its processes, so a process leaves
+ * it in O(1) wherever it is, and a bitmap of the non-empty levels finds the
+ * level to run in O(1).
+ *
+ * With a decay interval, every process is moved back to the highest level
+ * once per interval, so the processes at the bottom are not starved. The
+ * lower levels are appended to the highest one whole, and each process
+ * resets its own level the next time it is touched, so the boost costs the
+ * same however many processes there are.
+ */
+class MultilevelFeedbackScheduler extends AbstractScheduler {
+    static final int LEVELS = 8;
+
+    // first and last process of every level, and how many are on it
+    private ScheduledProcess[] heads;
+    private ScheduledProcess[] tails;
+    private int[] sizes;
+
+    // allotment of the highest level
+    private int quantum;
+
+    // bit i is set if level i has ready processes
+    private int occupied;
+
+    /**
+     * @param quantum Clock cycles per timer interrupt, the allotment of the
+     *                highest level.
+     */
+    MultilevelFeedbackScheduler(int quantum) {
+        this.quantum = quantum;
+        this.heads   = new ScheduledProcess[LEVELS];
+        this.tails   = new ScheduledProcess[LEVELS];
+        this.sizes   = new int[LEVELS];
+    }
+
+    @Override
+    public String getPolicy() {
+        return MLFQ;
+    }
+
+    /**
+     * @return The cycles a process may run on a level before it moves down.
+     */
+    long allotment(int level) {
+        return (long) quantum << level;
+    }
+
+    /**
+     * @return The level the process is on, counting any boost since it was
+     * last touched.
+     */
+    int getLevel(ScheduledProcess p) {
+        catchUp(p);
+        return p.getLevel();
+    }
+
+    @Override
+    protected void enqueue(ScheduledProcess p) {
+        catchUp(p);
+        append(p.getLevel(), p);
+    }
+
+    @Override
+    protected boolean dequeue(ScheduledProcess p) {
+        catchUp(p);
+
+        int level = p.getSlot();
+        if(level < 0) return false;
+
+        ScheduledProcess previous = p.getPreviousReady();
+        ScheduledProcess next = p.getNextReady();
+        if(previous != null) {
+            previous.setNextReady(next);
+        } else {
+            heads[level] = next;
+        }
+        if(next != null) {
+            next.setPreviousReady(previous);
+        } else {
+            tails[level] = previous;
+        }
+
+        if(--sizes[level] == 0) {
+            occupied &= ~(1 << level);
+        }
+        p.setPreviousReady(null);
+        p.setNextReady(null);
+        p.setSlot(-1);
+
+        return true;
+    }
+
+    @Override
+    protected ScheduledProcess selectNext() {
+        if(occupied == 0) return null;
+
+        return heads[Integer.numberOfTrailingZeros(occupied)];
+    }
+
+    /**
+     * Outranked by any process on a higher level, or on its own level, where
+     * the processes take turns, including the level it is about to move to.
+     */
+    @Override
+    protected boolean isOutranked(ScheduledProcess p, long cycles) {
+        catchUp(p);
+
+        int level = p.getLevel();
+        int next = p.getLevelCycles() + cycles >= allotment(level) && level < LEVELS - 1 ? level + 1 : level;
+
+        int others = occupied & ((2 << next) - 1);
+        if(sizes[level] == 1) {
+            others &= ~(1 << level);
+        }
+
+        return others != 0;
+    }
+
+    /**
+     * The last process of the lowest non-empty level.
+     */
+    @Override
+    protected ScheduledProcess selectVictim() {
+        return tails[31 - Integer.numberOfLeadingZeros(occupied)];
+    }
+
+    /**
+     * Moves the process to the back of its level, or down a level once it
+     * has used up its allotment.
+     */
+    @Override
+    protected void charge(ScheduledProcess p, long cycles) {
+        catchUp(p);
+
+        int level = p.getLevel();
+        long used = p.getLevelCycles() + cycles;
+
+        dequeue(p);
+        if(used >= allotment(level) && level < LEVELS - 1) {
+            p.setLevel(level + 1, 0);
+        } else {
+            p.setLevel(level, used);
+        }
+        enqueue(p);
+    }
+
+    /**
+     * Appends the lower levels to the highest, keeping the ready processes
+     * in the order of their levels. The processes move back to the highest
+     * level as they catch up with the epoch.
+     */
+    @Override
+    protected void decay() {
+        for(int level = 1; level < LEVELS; level++) {
+            if(heads[level] == null) continue;
+
+            if(tails[0] != null) {
+                tails[0].setNextReady(heads[level]);
+                heads[level].setPreviousReady(tails[0]);
+            } else {
+                heads[0] = heads[level];
+            }
+            tails[0] = tails[level];
+            sizes[0] += sizes[level];
+
+            heads[level] = null;
+            tails[level] = null;
+            sizes[level] = 0;
+        }
+
+        if(occupied != 0) {
+            occupied = 1;
+        }
+    }
+
+    /**
+     * Writes the order of every level, which the processes do not keep.
+     */
+    @Override
+    protected void writePolicyCheckpoint(Checkpoint.Writer out) throws IOException {
+        for(int level = 0; level < LEVELS; level++) {
+            out.putInt(sizes[level]);
+            for(ScheduledProcess p = heads[level]; p != null; p = p.getNextReady()) {
+                out.putInt(p.getId());
+            }
+        }
+    }
+
+    @Override
+    protected void readPolicyCheckpoint(Checkpoint.Reader in) throws IOException {
+        occupied = 0;
+        for(int level = 0; level < LEVELS; level++) {
+            heads[level] = null;
+            tails[level] = null;
+            sizes[level] = 0;
+        }
+
+        for(int level = 0; level < LEVELS; level++) {
+            int count = in.getInt();
+            for(int i = 0; i < count; i++) {
+                append(level, getProcess(in.getInt()));
+            }
+        }
+    }
+
+    private void append(int level, ScheduledProcess p) {
+        ScheduledProcess tail = tails[level];
+        p.setPreviousReady(tail);
+        p.setNextReady(null);
+        if(tail != null) {
+            tail.setNextReady(p);
+        } else {
+            heads[level] = p;
+        }
+        tails[level] = p;
+        sizes[level]++;
+
+        occupied |= 1 << level;
+        p.setSlot(level);
+    }
+
+    /**
+     * Moves a process back to the highest level if the processes have been
+     * boosted since it was last touched. A ready process is already on the
+     * highest level's list, which the boost appended the others to.
+     *
+     * A process handed over from a CPU whose clock is ahead takes this CPU's
+     * epoch as it is.
+     */
+    private void catchUp(ScheduledProcess p) {
+        int epoch = p.getEpoch();
+        if(epoch == getEpoch()) return;
+
+        p.setEpoch(getEpoch());
+        if(epoch < getEpoch()) {
+            p.setLevel(0, 0);
+            if(p.getSlot() >= 0) {
+                p.setSlot(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Paged physical memory shared by the CPUs of one simulation.
+ *
+ * Every process has its own virtual address space starting at address 0,
+ * mapped page by page through its own page table. Pages are loaded from the
+ * program image on first touch. A page already resident for another
+ * process running the same image is mapped without loading (a minor fault);
+ * otherwise it is loaded into a free frame (a major fault). When no frame
+ * is free, one is reclaimed with the clock algorithm. Program pages are
+ * read-only, so a reclaimed frame never needs writing back.
+ *
+ * This is an accounting model: a frame records which image page it holds
+ * but not its contents, and instructions are still fetched from the image.
+ *
+ * Page tables are not updated when a frame is reclaimed. Instead every
+ * frame records which image page it holds, and a page table entry pointing
+ * at a frame that holds something else counts as not resident.
+ *
+ * A page fault costs no simulated time, so paging changes the metrics but
+ * not the schedule.
+ */
+class PagedMemory {
+    static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE  = 1 << PAGE_SHIFT;
+
+    // results of touching a page
+    static final int HIT         = 0;
+    static final int MINOR_FAULT = 1;
+    static final int MAJOR_FAULT = 2;
+
+    private int frameCount;
+
+    // image and page held by each frame
+    private ProgramCache.Image[] frameImages;
+    private int[] framePages;
+
+    // referenced bits and hand of the clock algorithm
+    private boolean[] referenced;
+    private int hand;
+
+    // frames that have never been used
+    private int nextFreeFrame;
+
+    private long majorFaults;
+    private long minorFaults;
+    private long evictions;
+
+    /**
+     * @param size The physical memory size, at least one page. Any part of a
+     *             page left over is not used.
+     */
+    PagedMemory(int size) {
+        frameCount    = size / PAGE_SIZE;
+        frameImages   = new ProgramCache.Image[frameCount];
+        framePages    = new int[frameCount];
+        referenced    = new boolean[frameCount];
+        hand          = 0;
+        nextFreeFrame = 0;
+    }
+
+    /**
+     * @return The number of pages needed for the given number of addresses.
+     */
+    static int pageCount(int size) {
+        return (size + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+    }
+
+    /**
+     * Makes one page of a process resident.
+     *
+     * @param process The process touching the page.
+     * @param page    The virtual page number.
+     * @return HIT, MINOR_FAULT or MAJOR_FAULT.
+     */
+    synchronized int touch(ScheduledProcess process, int page) {
+        ProgramCache.Image image = process.getImage();
+        int[] pageTable = process.getPageTable();
+
+        // page table entries are created on first touch
+        if(pageTable == null) {
+            pageTable = new int[pageCount(image.size)];
+            Arrays.fill(pageTable, -1);
+            process.setPageTable(pageTable);
+        }
+
+        int frame = pageTable[page];
+        if(frame >= 0 && frameImages[frame] == image && framePages[frame] == page) {
+            referenced[frame] = true;
+            return HIT;
+        }
+
+        // resident for another process running the same image?
+        frame = image.residentFrames[page];
+        if(frame >= 0) {
+            pageTable[page] = frame;
+            referenced[frame] = true;
+            minorFaults++;
+            process.addMinorFault();
+            return MINOR_FAULT;
+        }
+
+        frame = allocateFrame();
+        pageIn(frame, image, page);
+        pageTable[page] = frame;
+        majorFaults++;
+        process.addMajorFault();
+        return MAJOR_FAULT;
+    }
+
+    synchronized long getMajorFaults() {
+        return majorFaults;
+    }
+
+    synchronized long getMinorFaults() {
+        return minorFaults;
+    }
+
+    /**
+     * @return The number of resident pages reclaimed to make room for others.
+     */
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The number of frames that have ever been used.
+     */
+    synchronized int getFramesUsed() {
+        return nextFreeFrame;
+    }
+
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Writes which image page every frame holds.
+     */
+    synchronized void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putInt(frameCount);
+        out.putInt(nextFreeFrame);
+        out.putInt(hand);
+        out.putLong(majorFaults);
+        out.putLong(minorFaults);
+        out.putLong(evictions);
+
+        for(int frame = 0; frame < nextFreeFrame; frame++) {
+            out.putInt(frameImages[frame].index);
+            out.putInt(framePages[frame]);
+            out.putBoolean(referenced[frame]);
+        }
+    }
+
+    /**
+     * Replaces the contents of memory with those written by writeCheckpoint.
+     * The memory size is the one in the checkpoint.
+     *
+     * @param images The program images, by index, none of them resident.
+     */
+    synchronized void readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images) throws IOException {
+        frameCount    = in.getInt();
+        nextFreeFrame = in.getInt();
+        hand          = in.getInt();
+        majorFaults   = in.getLong();
+        minorFaults   = in.getLong();
+        evictions     = in.getLong();
+
+        frameImages = new ProgramCache.Image[frameCount];
+        framePages  = new int[frameCount];
+        referenced  = new boolean[frameCount];
+
+        for(int frame = 0; frame < nextFreeFrame; frame++) {
+            ProgramCache.Image image = images.get(in.getInt());
+            int page = in.getInt();
+
+            pageIn(frame, image, page);
+            referenced[frame] = in.getBoolean();
+        }
+    }
+
+    private int allocateFrame() {
+        if(nextFreeFrame < frameCount) {
+            return nextFreeFrame++;
+        }
+
+        // clock: pass over referenced frames, clearing their bit
+        while(referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % frameCount;
+        }
+
+        int frame = hand;
+        hand = (hand + 1) % frameCount;
+
+        frameImages[frame].residentFrames[framePages[frame]] = -1;
+        evictions++;
+        return frame;
+    }
+
+    private void pageIn(int frame, ProgramCache.Image image, int page) {
+        frameImages[frame] = image;
+        framePages[frame]  = page;
+        referenced[frame]  = true;
+        image.residentFrames[page] = frame;
+    }
+}
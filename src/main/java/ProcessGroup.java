@@ -0,0 +1,360 @@
+import java.io.IOException;
+
+/**
+ * A group of processes that share CPU utilization.
+ *
+ * Holds the group's utilization counter and the group's ready (unblocked)
+ * processes. The processes are kept in one ReadyTree for every starting
+ * priority among them, in which their order depends only on utilization,
+ * so a decay leaves the trees as they are.
+ *
+ * When several CPUs run the same group, each CPU has its own ProcessGroup
+ * and they all add to one shared counter. The local count is refreshed from
+ * the shared one when the CPU is about to pick a process under the group.
+ *
+ * The group's share of the priority only changes every few cycles of
+ * utilization, so it is cached along with the utilization at which it next
+ * changes.
+ *
+ * With decay the utilization is halved once per decay interval, lazily: the
+ * group remembers the epoch it was last decayed in and catches up the next
+ * time its scheduler touches it.
+ *
+ * Groups may be nested. A group's utilization counts every cycle run by its
+ * own processes and those of the groups under it, and a process's priority
+ * includes the share of every group on its path. Since the share of a group
+ * is the same for everything under it, each group keeps the groups under it
+ * that have ready processes in a heap ordered like the top groups, and
+ * caches the best ready process of its whole subtree, so a change only has
+ * to be passed up the groups above it.
+ */
+class ProcessGroup implements IndexedHeap.Entry {
+    private int id;
+    private int utilization;
+    private SharedUtilization sharedUtilization;
+    private int epoch;
+    private int refreshRound;
+    private int heapIndex;
+
+    // the group's own ready processes, by starting priority
+    private IntHashMap<ReadyTree> readyTrees;
+    private int readyCount;
+
+    // the group this one is in, or null at the top, and the groups in this
+    // one with ready processes
+    private ProcessGroup parent;
+    private IndexedHeap<ProcessGroup> readyChildren;
+
+    // best ready process in the group or under it, and its priority with
+    // the shares of this group and those under it
+    private ScheduledProcess bestProcess;
+    private int bestPriority;
+
+    // the group's entitlement, and the cached share of the priority
+    private double share;
+    private int priorityOffset;
+    private int nextOffsetUtilization;
+
+    /**
+     * @param parent            The group this one is in, or null.
+     * @param sharedUtilization The counter shared with the other CPUs, or
+     *                          null when the group is on one CPU.
+     */
+    ProcessGroup(int id, ProcessGroup parent, SharedUtilization sharedUtilization) {
+        this.id          = id;
+        this.parent      = parent;
+        this.utilization = sharedUtilization != null ? (int) sharedUtilization.sum() : 1;
+        this.sharedUtilization = sharedUtilization;
+        this.heapIndex   = -1;
+        this.readyTrees  = new IntHashMap<>();
+        this.readyChildren  = new IndexedHeap<>(ProcessGroup::compareGroups);
+        setShare(SchedulerProcessConfiguration.DEFAULT_GROUP_SHARE);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return The group this one is in, or null for a group at the top.
+     */
+    ProcessGroup getParent() {
+        return parent;
+    }
+
+    void setParent(ProcessGroup parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Counts several cycles at once, as if counted one by one.
+     */
+    void incrementUtilization(int cycles) {
+        this.utilization += cycles;
+
+        if(utilization >= nextOffsetUtilization) {
+            updatePriorityOffset();
+        }
+
+        if(sharedUtilization != null) {
+            sharedUtilization.add(cycles);
+        }
+    }
+
+    /**
+     * Sets the group's share of the CPU, or of its parent's share. A group's
+     * utilization counts against its priority in inverse proportion to its
+     * share.
+     *
+     * @param share Between 0 and 1.
+     */
+    void setShare(double share) {
+        this.share = share;
+        updatePriorityOffset();
+    }
+
+    /**
+     * Picks up the utilization other CPUs have added to the shared counter.
+     *
+     * @param round The caller's refresh round. The group is refreshed only
+     *              once per round.
+     * @return True if the group's share of the priority has changed.
+     */
+    boolean refreshUtilization(int round) {
+        if(sharedUtilization == null || round == refreshRound) return false;
+        refreshRound = round;
+
+        int offset = priorityOffset;
+        int previous = utilization;
+        utilization = (int) sharedUtilization.sum();
+
+        // decayed by another CPU, or grown past the next step
+        if(utilization < previous || utilization >= nextOffsetUtilization) {
+            updatePriorityOffset();
+        }
+
+        return priorityOffset != offset;
+    }
+
+    /**
+     * Halves the utilization once for every decay interval since the group
+     * was last decayed.
+     *
+     * @param epoch The number of decay intervals elapsed.
+     * @return True if the group's share of the priority has changed.
+     */
+    boolean decayTo(int epoch) {
+        if(epoch <= this.epoch) return false;
+
+        int offset = priorityOffset;
+        int shift = epoch - this.epoch;
+        this.epoch = epoch;
+
+        if(sharedUtilization != null) {
+            sharedUtilization.decayTo(epoch);
+            utilization = (int) sharedUtilization.sum();
+        } else {
+            utilization = (int) ScheduledProcess.decay(utilization, shift);
+        }
+
+        updatePriorityOffset();
+        return priorityOffset != offset;
+    }
+
+    /**
+     * The group's share of the fair-share priority, gcpu / (4 * share),
+     * which is (gcpu / 2) for the default share of 0.5.
+     *
+     * @return The amount added to the priority of every process in the group.
+     */
+    int getPriorityOffset() {
+        return priorityOffset;
+    }
+
+    private static int priorityOffset(int utilization, double share) {
+        int gcpu = (utilization - 1) / 2;
+        return (int) (gcpu / (4 * share));
+    }
+
+    /**
+     * Recalculates the cached offset, and the smallest utilization at which
+     * it next grows.
+     */
+    private void updatePriorityOffset() {
+        priorityOffset = priorityOffset(utilization, share);
+
+        // gcpu is (utilization - 1) / 2, so utilization 2 * gcpu + 1 is the
+        // first with a given gcpu
+        int gcpu = Math.max(0, (int) Math.ceil((priorityOffset + 1) * 4 * share) - 1);
+        while(gcpu > 0 && priorityOffset(2 * gcpu - 1, share) > priorityOffset) {
+            gcpu--;
+        }
+        while(priorityOffset(2 * gcpu + 1, share) <= priorityOffset) {
+            gcpu++;
+        }
+
+        nextOffsetUtilization = 2 * gcpu + 1;
+    }
+
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putInt(utilization);
+        out.putInt(epoch);
+    }
+
+    void readCheckpoint(Checkpoint.Reader in) throws IOException {
+        utilization = in.getInt();
+        epoch       = in.getInt();
+        updatePriorityOffset();
+    }
+
+    /**
+     * Adds one of the group's own processes to its ready processes.
+     */
+    void addReadyProcess(ScheduledProcess p) {
+        ReadyTree tree = readyTrees.get(p.getStartingPriority());
+        if(tree == null) {
+            tree = new ReadyTree(p.getStartingPriority());
+            readyTrees.put(p.getStartingPriority(), tree);
+        }
+
+        tree.add(p);
+        readyCount++;
+    }
+
+    /**
+     * Takes in a change to the utilization of a process, if it is ready.
+     */
+    void updateReadyProcess(ScheduledProcess p) {
+        ReadyTree tree = ReadyTree.of(p);
+        if(tree != null) {
+            tree.update(p);
+        }
+    }
+
+    /**
+     * @return False if the process was not ready.
+     */
+    boolean removeReadyProcess(ScheduledProcess p) {
+        ReadyTree tree = ReadyTree.of(p);
+        if(tree == null) return false;
+
+        tree.remove(p);
+        readyCount--;
+        return true;
+    }
+
+    /**
+     * @return True if the group has ready processes of its own, not counting
+     * those of the groups in it.
+     */
+    boolean hasReadyProcesses() {
+        return readyCount > 0;
+    }
+
+    /**
+     * @return The ready process with the largest ID among those with the
+     * worst starting priority, or null.
+     */
+    ScheduledProcess getLastReadyProcess() {
+        ReadyTree last = null;
+        for(int slot = 0; slot < readyTrees.capacity(); slot++) {
+            ReadyTree tree = readyTrees.valueAt(slot);
+            if(tree != null && tree.size() > 0
+                    && (last == null || tree.getStartingPriority() > last.getStartingPriority())) {
+                last = tree;
+            }
+        }
+
+        return last != null ? last.last() : null;
+    }
+
+    /**
+     * @return The groups in this one that have ready processes, ordered by
+     * the priority of their best ready process.
+     */
+    IndexedHeap<ProcessGroup> getReadyChildren() {
+        return readyChildren;
+    }
+
+    /**
+     * Picks the best ready process again, from the group's own and the best
+     * of the groups in it. Must be called after either changes, or the
+     * group's share of the priority does, and before the group is moved in
+     * its parent's heap.
+     *
+     * @param epoch The scheduler's epoch, which the priorities of the ready
+     *              processes are taken as of.
+     * @return True if the best process or its priority has changed.
+     */
+    boolean updateBest(int epoch) {
+        ScheduledProcess best = null;
+        int priority = 0;
+
+        if(readyCount > 0) {
+            for(int slot = 0; slot < readyTrees.capacity(); slot++) {
+                ReadyTree tree = readyTrees.valueAt(slot);
+                ScheduledProcess p = tree != null ? tree.getBest(epoch) : null;
+                if(p != null && (best == null || tree.getBestPriority() < priority
+                        || tree.getBestPriority() == priority && p.getId() < best.getId())) {
+                    best     = p;
+                    priority = tree.getBestPriority();
+                }
+            }
+        }
+
+        ProcessGroup child = readyChildren.peek();
+        if(child != null && (best == null || child.bestPriority < priority
+                || child.bestPriority == priority && child.bestProcess.getId() < best.getId())) {
+            best     = child.bestProcess;
+            priority = child.bestPriority;
+        }
+
+        if(best != null) {
+            priority += priorityOffset;
+        }
+
+        boolean changed = best != bestProcess || priority != bestPriority;
+        bestProcess  = best;
+        bestPriority = priority;
+
+        return changed;
+    }
+
+    /**
+     * Fetches the best ready process in the group or the groups in it, as of
+     * the last updateBest.
+     *
+     * @return The ready process with the smallest priority value, or null.
+     */
+    ScheduledProcess getBestProcess() {
+        return bestProcess;
+    }
+
+    /**
+     * Priority of the best ready process.
+     *
+     * @return The fair-share priority of the best process, less the shares
+     * of the groups above this one.
+     */
+    int getBestPriority() {
+        return bestPriority;
+    }
+
+    @Override
+    public int getHeapIndex() {
+        return heapIndex;
+    }
+
+    @Override
+    public void setHeapIndex(int heapIndex) {
+        this.heapIndex = heapIndex;
+    }
+
+    /**
+     * Orders groups by the priority of their best ready process.
+     */
+    static int compareGroups(ProcessGroup a, ProcessGroup b) {
+        int cmp = Integer.compare(a.getBestPriority(), b.getBestPriority());
+        return cmp != 0 ? cmp : Integer.compare(a.getBestProcess().getId(), b.getBestProcess().getId());
+    }
+}
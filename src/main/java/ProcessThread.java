@@ -0,0 +1,85 @@
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The thread a process runs on in the thread-per-process model.
+ *
+ * The thread runs the CPU loop for its own process, and parks whenever the
+ * process is switched out, whether at the end of its quantum or blocked on
+ * I/O. Only the thread of the process a CPU's scheduler dispatched runs that
+ * CPU's loop, and it hands the CPU straight to the next thread, so exactly
+ * one thread per CPU is ever running and the schedule is the same as when
+ * the CPU steps through the processes itself.
+ *
+ * Processes run on virtual threads, so a parked process costs little more
+ * than its stack and hundreds of thousands of them fit in memory. Virtual
+ * threads need Java 21; they are looked up reflectively so the simulator
+ * still builds and runs on Java 17 without this model.
+ */
+class ProcessThread implements Runnable {
+    // null if the JVM has no virtual threads
+    private static final ThreadFactory THREADS = virtualThreadFactory();
+
+    private ScheduledProcess process;
+    private volatile Thread thread;
+
+    // CPU the process has been dispatched on, until its thread takes it over
+    private AtomicReference<Cpu> dispatchedOn;
+
+    ProcessThread(ScheduledProcess process) {
+        this.process      = process;
+        this.dispatchedOn = new AtomicReference<>();
+    }
+
+    /**
+     * @return True if the JVM has virtual threads.
+     */
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Hands a CPU over to the process's thread, starting the thread the
+     * first time. The calling thread must not touch the CPU afterwards.
+     */
+    void dispatch(Cpu cpu) {
+        dispatchedOn.set(cpu);
+
+        if(thread == null) {
+            thread = THREADS.newThread(this);
+            thread.start();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        while(true) {
+            Cpu cpu;
+            while((cpu = dispatchedOn.getAndSet(null)) == null) {
+                LockSupport.park(this);
+            }
+
+            try {
+                if(cpu.runProcess(process)) return;
+            } catch(RuntimeException e) {
+                cpu.fail(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Thread.ofVirtual().factory(), or null before Java 21.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
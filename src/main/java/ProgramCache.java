@@ -0,0 +1,166 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The program images of one simulation.
+ *
+ * Each distinct program is loaded and decoded once, and every process
+ * running it shares that image read-only, keeping only its own context.
+ * A file passed several times is read once, and two files with the same
+ * contents share one image as well. The images are the backing store that
+ * PagedMemory pages in from.
+ */
+class ProgramCache {
+    /**
+     * One loaded program image.
+     */
+    static class Image {
+        int index;
+        int size;
+        int entry;
+        int[] code;
+        DecodedProgram program;
+
+        // frame holding each page of the image, or -1 if it is not resident
+        int[] residentFrames;
+    }
+
+    // images by the contents of the program
+    private static class Content {
+        private int[] code;
+        private int entry;
+        private int hash;
+
+        Content(int[] code, int entry) {
+            this.code  = code;
+            this.entry = entry;
+            this.hash  = 31 * Arrays.hashCode(code) + entry;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Content)) return false;
+            Content other = (Content) o;
+            return entry == other.entry && Arrays.equals(code, other.code);
+        }
+    }
+
+    private HashMap<String, Image> byPath;
+    private HashMap<Content, Image> byContent;
+
+    // images in the order they were loaded
+    private ArrayList<Image> images;
+
+    ProgramCache() {
+        this.byPath    = new HashMap<>();
+        this.byContent = new HashMap<>();
+        this.images    = new ArrayList<>();
+    }
+
+    /**
+     * @return The image of the program in a file, loaded if no image with
+     * the same contents is loaded yet.
+     */
+    Image load(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        Image image = byPath.get(path);
+        if(image != null) return image;
+
+        ProgramImage loaded = ProgramImage.load(file);
+        Content content = new Content(loaded.getCode(), loaded.getEntry());
+
+        image = byContent.get(content);
+        if(image == null) {
+            image = addImage(loaded.getEntry(), loaded.getProgram());
+        }
+
+        byPath.put(path, image);
+        return image;
+    }
+
+    /**
+     * @return The images, by index.
+     */
+    List<Image> getImages() {
+        return images;
+    }
+
+    /**
+     * Writes every image and the files it was loaded from.
+     */
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putInt(images.size());
+        for(Image image : images) {
+            out.putInt(image.size);
+            out.putInt(image.entry);
+            out.putInts(image.code);
+        }
+
+        out.putInt(byPath.size());
+        for(Map.Entry<String, Image> path : byPath.entrySet()) {
+            out.putString(path.getKey());
+            out.putInt(path.getValue().index);
+        }
+    }
+
+    /**
+     * Replaces the images with those written by writeCheckpoint. None of
+     * their pages are resident.
+     */
+    void readCheckpoint(Checkpoint.Reader in) throws IOException {
+        byPath.clear();
+        byContent.clear();
+        images.clear();
+
+        int count = in.getInt();
+        for(int i = 0; i < count; i++) {
+            int size  = in.getInt();
+            int entry = in.getInt();
+            int[] code = in.getInts();
+            if(code.length != size) {
+                throw new IOException("Image " + i + " has " + code.length + " bytes, not " + size);
+            }
+            addImage(entry, new DecodedProgram(code));
+        }
+
+        int paths = in.getInt();
+        for(int i = 0; i < paths; i++) {
+            String path = in.getString();
+            byPath.put(path, images.get(in.getInt()));
+        }
+    }
+
+    private Image addImage(int entry, DecodedProgram program) {
+        int[] code = program.getImage();
+
+        Image image = new Image();
+        image.index   = images.size();
+        image.size    = code.length;
+        image.entry   = entry;
+        image.code    = code;
+        image.program = program;
+        image.residentFrames = new int[PagedMemory.pageCount(image.size)];
+        Arrays.fill(image.residentFrames, -1);
+
+        byContent.put(new Content(code, entry), image);
+        images.add(image);
+        return image;
+    }
+
+    /**
+     * @return The number of distinct images loaded.
+     */
+    int size() {
+        return byContent.size();
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+/**
+ * Loads and writes program images (.pexe files).
+ *
+ * Two formats are supported. The text format has the program size on the
+ * first line and then one decimal byte per line. The binary format has a
+ * big-endian header followed by one byte per memory address:
+ *
+ *      int     magic       "PEXE"
+ *      int     version     1
+ *      int     size        number of bytes of code
+ *      int     entry       address of the first instruction
+ *      int     checksum    CRC-32 of the code
+ *
+ * Binary images are memory-mapped and decoded straight from the mapping,
+ * without parsing. The format of a file is told apart by its first four
+ * bytes, read before anything is mapped.
+ */
+class ProgramImage {
+    static final int MAGIC   = 0x50455845;  // "PEXE"
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    private DecodedProgram program;
+    private int entry;
+
+    private ProgramImage(DecodedProgram program, int entry) {
+        this.program = program;
+        this.entry   = entry;
+    }
+
+    /**
+     * Loads a program.
+     *
+     * @param file The .pexe file, in either format.
+     */
+    static ProgramImage load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            int read = 0;
+            while(magic.hasRemaining() && read >= 0) {
+                read = channel.read(magic);
+            }
+
+            // only a binary image is mapped
+            if(!magic.hasRemaining() && magic.getInt(0) == MAGIC) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                return loadBinary(file, buffer);
+            }
+        }
+
+        return loadText(file);
+    }
+
+    /**
+     * Writes a program in the binary format.
+     *
+     * @param code  The program, one byte (0-255) per address.
+     * @param entry The address of the first instruction.
+     */
+    static void writeBinary(OutputStream out, int[] code, int entry) throws IOException {
+        byte[] bytes = new byte[code.length];
+        for(int addr = 0; addr < code.length; addr++) {
+            if(code[addr] < 0 || code[addr] > 0xff) {
+                throw new IllegalArgumentException("Value " + code[addr] + " at address " + addr + " does not fit in a byte");
+            }
+            bytes[addr] = (byte) code[addr];
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(code.length);
+        data.writeInt(entry);
+        data.writeInt((int) crc.getValue());
+        data.write(bytes);
+        data.flush();
+    }
+
+    /**
+     * @return The program, one byte per address.
+     */
+    int[] getCode() {
+        return program.getImage();
+    }
+
+    /**
+     * @return The program, decoded as it was loaded.
+     */
+    DecodedProgram getProgram() {
+        return program;
+    }
+
+    int getSize() {
+        return program.size();
+    }
+
+    int getEntry() {
+        return entry;
+    }
+
+    private static ProgramImage loadBinary(File file, MappedByteBuffer buffer) throws IOException {
+        if(buffer.remaining() < HEADER_SIZE) {
+            throw new IOException(file + ": truncated header");
+        }
+
+        int version  = buffer.getInt(4);
+        int size     = buffer.getInt(8);
+        int entry    = buffer.getInt(12);
+        int checksum = buffer.getInt(16);
+
+        if(version != VERSION) {
+            throw new IOException(file + ": unsupported version " + version);
+        }
+        if(size < 0 || size != buffer.remaining() - HEADER_SIZE) {
+            throw new IOException(file + ": size " + size + " does not match the file");
+        }
+        if(entry < 0 || (entry >= size && size > 0)) {
+            throw new IOException(file + ": entry point " + entry + " is outside the program");
+        }
+
+        // checksum the code where it lies in the mapping
+        CRC32 crc = new CRC32();
+        crc.update(buffer.position(HEADER_SIZE));
+        if((int) crc.getValue() != checksum) {
+            throw new IOException(file + ": checksum mismatch");
+        }
+
+        return new ProgramImage(new DecodedProgram(buffer.position(HEADER_SIZE)), entry);
+    }
+
+    private static ProgramImage loadText(File file) throws IOException {
+        try (Scanner in = new Scanner(file)) {
+            // get size of the program
+            int[] code = new int[in.nextInt()];
+
+            // read the program
+            for(int i = 0; i < code.length; i++) {
+                code[i] = in.nextInt();
+            }
+
+            return new ProgramImage(new DecodedProgram(code), 0);
+        }
+    }
+}
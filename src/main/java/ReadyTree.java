@@ -0,0 +1,332 @@
+/**
+ * The ready processes of one group that have the same starting priority, so
+ * that only their utilization and IDs tell them apart.
+ *
+ * A treap keyed by process ID, in which every node also keeps the least
+ * utilization under it. Utilization is compared scaled to a common epoch,
+ * u * 2^epoch, which a decay never reorders, so the tree holds processes
+ * that have not caught up with the latest decays and is never touched by
+ * one. The best process is the one with the smallest ID among those whose
+ * caught-up utilization gives the same priority as the least, found in one
+ * walk down the tree.
+ *
+ * Nodes are ranked by a hash of the process ID, so the tree has the same
+ * shape on every run. Adding and removing cost O(log n) expected. Charging
+ * a process only updates the least utilization above it, as far up as that
+ * changes.
+ */
+class ReadyTree {
+    /**
+     * A process's place in a tree, created when the process is first added
+     * and reused after.
+     */
+    static class Node {
+        private ScheduledProcess process;
+        private int id;
+        private int rank;
+        private ReadyTree tree;     // the tree the node is in, or null
+
+        private Node left;
+        private Node right;
+        private Node parent;
+
+        // the process's utilization and epoch as of its last update, and the
+        // least of those in the subtree
+        private int utilization;
+        private int epoch;
+        private int leastUtilization;
+        private int leastEpoch;
+
+        private Node(ScheduledProcess process) {
+            this.process = process;
+            this.id      = process.getId();
+            this.rank    = rank(id);
+        }
+    }
+
+    private int startingPriority;
+    private Node root;
+    private int size;
+
+    // best process as of an epoch, until the tree changes
+    private ScheduledProcess best;
+    private int bestPriority;
+    private int bestEpoch;
+
+    /**
+     * @param startingPriority The starting priority of every process in the
+     *                         tree.
+     */
+    ReadyTree(int startingPriority) {
+        this.startingPriority = startingPriority;
+    }
+
+    /**
+     * @return The tree the process is in, or null.
+     */
+    static ReadyTree of(ScheduledProcess p) {
+        Node node = p.getReadyNode();
+        return node != null ? node.tree : null;
+    }
+
+    int getStartingPriority() {
+        return startingPriority;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a process that is in no tree.
+     */
+    void add(ScheduledProcess p) {
+        Node node = p.getReadyNode();
+        if(node == null) {
+            node = new Node(p);
+            p.setReadyNode(node);
+        }
+
+        node.tree   = this;
+        node.left   = null;
+        node.right  = null;
+        node.parent = null;
+        node.utilization      = p.getUtilization();
+        node.epoch            = p.getEpoch();
+        node.leastUtilization = node.utilization;
+        node.leastEpoch       = node.epoch;
+
+        if(root == null) {
+            root = node;
+        } else {
+            Node parent = root;
+            while(true) {
+                Node next = node.id < parent.id ? parent.left : parent.right;
+                if(next == null) break;
+                parent = next;
+            }
+
+            node.parent = parent;
+            if(node.id < parent.id) {
+                parent.left = node;
+            } else {
+                parent.right = node;
+            }
+
+            // the least utilization above can only fall
+            for(Node n = parent; n != null && compare(node.utilization, node.epoch, n.leastUtilization, n.leastEpoch) < 0; n = n.parent) {
+                n.leastUtilization = node.utilization;
+                n.leastEpoch       = node.epoch;
+            }
+
+            while(node.parent != null && node.rank > node.parent.rank) {
+                rotateUp(node);
+            }
+        }
+
+        size++;
+        best = null;
+    }
+
+    /**
+     * Removes a process that is in this tree.
+     */
+    void remove(ScheduledProcess p) {
+        Node node = p.getReadyNode();
+
+        // rotate the node down to a leaf, then cut it off
+        while(node.left != null || node.right != null) {
+            rotateUp(node.right == null || node.left != null && node.left.rank > node.right.rank ? node.left : node.right);
+        }
+
+        Node parent = node.parent;
+        if(parent == null) {
+            root = null;
+        } else if(parent.left == node) {
+            parent.left = null;
+        } else {
+            parent.right = null;
+        }
+        updateLeast(parent);
+
+        node.parent = null;
+        node.tree   = null;
+        size--;
+        best = null;
+    }
+
+    /**
+     * Takes in a change to the utilization of a process in this tree.
+     */
+    void update(ScheduledProcess p) {
+        Node node = p.getReadyNode();
+        node.utilization = p.getUtilization();
+        node.epoch       = p.getEpoch();
+
+        updateLeast(node);
+        best = null;
+    }
+
+    /**
+     * Finds the best process, the first by priority and then ID, as of an
+     * epoch no earlier than any process in the tree has caught up with.
+     *
+     * @return The process, or null if the tree is empty.
+     */
+    ScheduledProcess getBest(int epoch) {
+        if(root == null) return null;
+        if(best != null && bestEpoch == epoch) return best;
+
+        // every process up to this utilization ties with the least utilized
+        int share = ScheduledProcess.utilizationPriority(decay(root.leastUtilization, root.leastEpoch, epoch));
+        long limit = 4L * share + 4;
+
+        Node node = root;
+        while(true) {
+            Node left = node.left;
+            if(left != null && decay(left.leastUtilization, left.leastEpoch, epoch) <= limit) {
+                node = left;
+            } else if(decay(node.utilization, node.epoch, epoch) <= limit) {
+                break;
+            } else {
+                node = node.right;
+            }
+        }
+
+        best         = node.process;
+        bestPriority = startingPriority + share;
+        bestEpoch    = epoch;
+
+        return best;
+    }
+
+    /**
+     * @return The priority of the process getBest last returned.
+     */
+    int getBestPriority() {
+        return bestPriority;
+    }
+
+    /**
+     * @return The process with the largest ID, or null.
+     */
+    ScheduledProcess last() {
+        Node node = root;
+        if(node == null) return null;
+
+        while(node.right != null) {
+            node = node.right;
+        }
+
+        return node.process;
+    }
+
+    /**
+     * Rotates a node above its parent.
+     */
+    private void rotateUp(Node node) {
+        Node parent = node.parent;
+        Node grandparent = parent.parent;
+
+        if(parent.left == node) {
+            parent.left = node.right;
+            if(node.right != null) node.right.parent = parent;
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if(node.left != null) node.left.parent = parent;
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent   = grandparent;
+
+        if(grandparent == null) {
+            root = node;
+        } else if(grandparent.left == parent) {
+            grandparent.left = node;
+        } else {
+            grandparent.right = node;
+        }
+
+        // the node now has what its parent had under it
+        node.leastUtilization = parent.leastUtilization;
+        node.leastEpoch       = parent.leastEpoch;
+        recomputeLeast(parent);
+    }
+
+    /**
+     * Recomputes the least utilization of a node and the nodes above it, as
+     * far up as it changes.
+     */
+    private static void updateLeast(Node node) {
+        while(node != null && recomputeLeast(node)) {
+            node = node.parent;
+        }
+    }
+
+    /**
+     * @return True if the node's least utilization has changed.
+     */
+    private static boolean recomputeLeast(Node node) {
+        int utilization = node.utilization;
+        int epoch = node.epoch;
+
+        Node left = node.left;
+        if(left != null && compare(left.leastUtilization, left.leastEpoch, utilization, epoch) < 0) {
+            utilization = left.leastUtilization;
+            epoch       = left.leastEpoch;
+        }
+        Node right = node.right;
+        if(right != null && compare(right.leastUtilization, right.leastEpoch, utilization, epoch) < 0) {
+            utilization = right.leastUtilization;
+            epoch       = right.leastEpoch;
+        }
+
+        if(utilization == node.leastUtilization && epoch == node.leastEpoch) return false;
+
+        node.leastUtilization = utilization;
+        node.leastEpoch       = epoch;
+        return true;
+    }
+
+    /**
+     * @return The utilization as of a later epoch.
+     */
+    private static int decay(int utilization, int from, int to) {
+        return (int) ScheduledProcess.decay(utilization, to - from);
+    }
+
+    /**
+     * Compares utilization scaled to a common epoch, a * 2^aEpoch with
+     * b * 2^bEpoch. A decay halves everything by the same amount and rounds
+     * down, which never reverses this order.
+     */
+    private static int compare(int a, int aEpoch, int b, int bEpoch) {
+        return aEpoch >= bEpoch ? compareScaled(a, aEpoch - bEpoch, b) : -compareScaled(b, bEpoch - aEpoch, a);
+    }
+
+    /**
+     * Compares a * 2^shift with b.
+     */
+    private static int compareScaled(int a, int shift, int b) {
+        if(a == 0 || shift < 32) {
+            return Long.compare((long) a << Math.min(shift, 31), b);
+        }
+
+        // a * 2^32 is past any int
+        return 1;
+    }
+
+    /**
+     * Mixes the bits of a process ID, the finalizer of MurmurHash3.
+     */
+    private static int rank(int id) {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
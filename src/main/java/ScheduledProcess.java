@@ -1,13 +1,64 @@
-public class ScheduledProcess {
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ScheduledProcess implements IndexedHeap.Entry {
+    private static final int[] NO_GROUPS = new int[0];
+
     private int id;
     private double weight;
     private double priority;
     private int baseAddress;
     private int addressSize;
-    private int blockTime;
+    private DecodedProgram program;
+    private ProgramCache.Image image;
+    private long wakeCycle;
+    private boolean blocked;
     private int utilization;
+    private int epoch;
+    private long cpuCycles;
     private int basePriority;
+    private int startingPriority;
     private int groupId;
+    private int[] groupPath;
+    private ProcessGroup group;
+    private int processPriority;
+    private int heapIndex;
+
+    // saved CPU context
+    private int instructionPointer;
+
+    // virtual page number to physical frame, created on first touch
+    private int[] pageTable;
+
+    // thread the process runs on in the thread-per-process model, or null
+    private ProcessThread thread;
+
+    // metrics counter of the cycles the process's group used, or null
+    // until the process first switches out
+    private LongAdder groupCycles;
+
+    // the process's place among its group's ready processes, kept by the
+    // fair share scheduler
+    private ReadyTree.Node readyNode;
+
+    // kept by the stride, lottery and multilevel feedback schedulers
+    private int tickets;
+    private long pass;
+    private int slot;
+    private int level;
+    private long levelCycles;
+    private ScheduledProcess previousReady;
+    private ScheduledProcess nextReady;
+
+    // accounting, in clock cycles
+    private boolean exited;
+    private long arrivalCycle;
+    private long readyCycle;
+    private long exitCycle;
+    private long blockedCycles;
+    private int majorFaults;
+    private int minorFaults;
 
     ScheduledProcess(int id, int groupId, int baseAddress, int addressSize, double weight, int priority) {
         this.id          = id;
@@ -16,48 +67,472 @@ public class ScheduledProcess {
         this.basePriority = priority;
         this.addressSize = addressSize;
         this.baseAddress = baseAddress;
-        this.blockTime   = 0;
+        this.wakeCycle   = 0;
+        this.blocked     = false;
         this.utilization = 0;
         this.groupId = groupId;
+        this.groupPath = NO_GROUPS;
+        this.heapIndex = -1;
+        this.instructionPointer = 0;
+        this.slot = -1;
+        this.startingPriority = (int) (priority + weight);
+        this.processPriority = calculateProcessPriority();
     }
 
-    int calculatePriority(int groupUtilization) {
-        int cpu  = (this.utilization - 1) / 2;
-        int gcpu = (groupUtilization - 1) / 2;
-        return (int)(basePriority + (cpu / 2) + (gcpu / 2) + weight);
+    /**
+     * The process's own part of its priority, without the group's share.
+     *
+     * Cached, since it only changes when the utilization does.
+     *
+     * @return BASE_PRIORITY + weight + (procUtil / 2).
+     */
+    int getProcessPriority() {
+        return processPriority;
+    }
+
+    /**
+     * The weight is a fraction added to the whole base priority, once, so
+     * processes that start out alike stay alike however far they run.
+     *
+     * @return The process's priority before it has run, BASE_PRIORITY + weight.
+     */
+    int getStartingPriority() {
+        return startingPriority;
+    }
+
+    private int calculateProcessPriority() {
+        return startingPriority + utilizationPriority(utilization);
+    }
+
+    /**
+     * @return The part of the process priority the utilization adds,
+     * procUtil / 2, where procUtil = (utilization - 1) / 2.
+     */
+    static int utilizationPriority(int utilization) {
+        int cpu = (utilization - 1) / 2;
+        return cpu / 2;
     }
 
     int getId() {
         return id;
     }
 
-    int getBaseAddress() {
-        return baseAddress;
+    double getWeight() {
+        return weight;
     }
 
     int getAddressSize() {
         return addressSize;
     }
 
-    void setBlockTime(int blockTime) {
-        this.blockTime = blockTime;
+    DecodedProgram getProgram() {
+        return program;
+    }
+
+    void setProgram(DecodedProgram program) {
+        this.program = program;
+    }
+
+    /**
+     * @return The image the process's pages are loaded from, or null if the
+     * process is not paged.
+     */
+    ProgramCache.Image getImage() {
+        return image;
+    }
+
+    void setImage(ProgramCache.Image image) {
+        this.image   = image;
+        this.program = image.program;
+    }
+
+    int[] getPageTable() {
+        return pageTable;
+    }
+
+    void setPageTable(int[] pageTable) {
+        this.pageTable = pageTable;
+    }
+
+    /**
+     * @return The number of page faults that copied a page into memory.
+     */
+    int getMajorFaults() {
+        return majorFaults;
+    }
+
+    void addMajorFault() {
+        majorFaults++;
+    }
+
+    /**
+     * @return The number of page faults that mapped a page already in memory.
+     */
+    int getMinorFaults() {
+        return minorFaults;
+    }
+
+    void addMinorFault() {
+        minorFaults++;
+    }
+
+    int getInstructionPointer() {
+        return instructionPointer;
+    }
+
+    void setInstructionPointer(int instructionPointer) {
+        this.instructionPointer = instructionPointer;
+    }
+
+    /**
+     * Blocks the process until the given clock cycle.
+     *
+     * @param wakeCycle The absolute clock cycle at which the I/O completes.
+     * @param delay     The number of cycles the I/O takes.
+     */
+    void block(long wakeCycle, int delay) {
+        this.wakeCycle = wakeCycle;
+        this.blocked   = true;
+        this.blockedCycles += delay;
+    }
+
+    void unblock() {
+        this.blocked = false;
+    }
+
+    long getWakeCycle() {
+        return wakeCycle;
     }
 
     public int getGroupId() {
         return groupId;
     }
 
-    void decrementBlockTime() {
-        if(this.blockTime > 0) {
-            this.blockTime--;
-        }
+    /**
+     * @return The IDs of the groups above the process's group, outermost
+     * first.
+     */
+    int[] getGroupPath() {
+        return groupPath;
+    }
+
+    void setGroupPath(int[] groupPath) {
+        this.groupPath = groupPath;
+    }
+
+    /**
+     * @return The group the process's scheduler keeps it in.
+     */
+    ProcessGroup getGroup() {
+        return group;
+    }
+
+    void setGroup(ProcessGroup group) {
+        this.group = group;
+    }
+
+    long getArrivalCycle() {
+        return arrivalCycle;
+    }
+
+    void setArrivalCycle(long arrivalCycle) {
+        this.arrivalCycle = arrivalCycle;
+    }
+
+    /**
+     * @return The clock cycle the process last became ready to run.
+     */
+    long getReadyCycle() {
+        return readyCycle;
+    }
+
+    void setReadyCycle(long readyCycle) {
+        this.readyCycle = readyCycle;
+    }
+
+    /**
+     * Moves the arrival and ready cycles onto another clock, so the process
+     * has waited as long by it as by the clock it came from.
+     *
+     * @param delta The number of cycles the other clock is ahead.
+     */
+    void rebase(long delta) {
+        this.arrivalCycle += delta;
+        this.readyCycle   += delta;
+    }
+
+    long getExitCycle() {
+        return exitCycle;
+    }
+
+    /**
+     * Marks the process as exited on the given clock cycle.
+     */
+    void setExitCycle(long exitCycle) {
+        this.exitCycle = exitCycle;
+        this.exited    = true;
+    }
+
+    boolean hasExited() {
+        return exited;
+    }
+
+    ProcessThread getThread() {
+        return thread;
+    }
+
+    void setThread(ProcessThread thread) {
+        this.thread = thread;
+    }
+
+    LongAdder getGroupCycles() {
+        return groupCycles;
+    }
+
+    void setGroupCycles(LongAdder groupCycles) {
+        this.groupCycles = groupCycles;
+    }
+
+    /**
+     * @return The process's tickets, in proportion to which the stride and
+     * lottery schedulers share out the CPU.
+     */
+    int getTickets() {
+        return tickets;
+    }
+
+    void setTickets(int tickets) {
+        this.tickets = tickets;
+    }
+
+    /**
+     * @return The stride scheduler's virtual time of the process, which
+     * grows by its stride for every cycle it runs.
+     */
+    long getPass() {
+        return pass;
+    }
+
+    void setPass(long pass) {
+        this.pass = pass;
+    }
+
+    /**
+     * @return The process's position in its lottery scheduler's ticket
+     * tree, or -1.
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * @return The multilevel feedback queue the process is on, 0 the highest.
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return The cycles the process has run for on its current level.
+     */
+    long getLevelCycles() {
+        return levelCycles;
+    }
+
+    void setLevel(int level, long levelCycles) {
+        this.level       = level;
+        this.levelCycles = levelCycles;
+    }
+
+    /**
+     * @return The process before this one on its multilevel feedback queue,
+     * or null.
+     */
+    ScheduledProcess getPreviousReady() {
+        return previousReady;
+    }
+
+    void setPreviousReady(ScheduledProcess previousReady) {
+        this.previousReady = previousReady;
+    }
+
+    /**
+     * @return The process after this one on its multilevel feedback queue,
+     * or null.
+     */
+    ScheduledProcess getNextReady() {
+        return nextReady;
+    }
+
+    void setNextReady(ScheduledProcess nextReady) {
+        this.nextReady = nextReady;
+    }
+
+    ReadyTree.Node getReadyNode() {
+        return readyNode;
+    }
+
+    void setReadyNode(ReadyTree.Node readyNode) {
+        this.readyNode = readyNode;
+    }
+
+    /**
+     * @return The total number of cycles the process has spent blocked on I/O.
+     */
+    long getBlockedCycles() {
+        return blockedCycles;
+    }
+
+    /**
+     * @return The utilization as of the process's epoch, the cycles it has
+     * run for, halved with every decay.
+     */
+    int getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * @return The number of cycles the process has run for.
+     */
+    long getCpuCycles() {
+        return cpuCycles;
     }
 
     boolean isBlocked() {
-        return this.blockTime > 0;
+        return this.blocked;
+    }
+
+    /**
+     * Counts several cycles at once, as if counted one by one.
+     */
+    void incrementUtilization(int cycles) {
+        this.utilization += cycles;
+        this.cpuCycles   += cycles;
+        this.processPriority = calculateProcessPriority();
+    }
+
+    /**
+     * Halves the utilization once for every decay interval since the process
+     * was last decayed.
+     *
+     * @param epoch The number of decay intervals elapsed.
+     * @return True if the process's priority has changed.
+     */
+    boolean decayTo(int epoch) {
+        if(epoch <= this.epoch) {
+            // a process handed over from a CPU whose clock is ahead has been
+            // decayed as far as that CPU got, and is taken as it is
+            this.epoch = epoch;
+            return false;
+        }
+
+        int priority = processPriority;
+        this.utilization = (int) decay(utilization, epoch - this.epoch);
+        this.epoch = epoch;
+        this.processPriority = calculateProcessPriority();
+
+        return processPriority != priority;
+    }
+
+    /**
+     * @return The last epoch the process was brought up to, by decayTo or
+     * by its scheduler.
+     */
+    int getEpoch() {
+        return epoch;
+    }
+
+    void setEpoch(int epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * @return The value halved the given number of times.
+     */
+    static long decay(long value, int halvings) {
+        return halvings >= 63 ? 0 : value >> halvings;
+    }
+
+    /**
+     * Writes the process's state, including its saved context.
+     */
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putInt(id);
+        out.putInt(groupId);
+        out.putInts(groupPath);
+        out.putInt(baseAddress);
+        out.putInt(addressSize);
+        out.putDouble(weight);
+        out.putInt(basePriority);
+        out.putInt(image.index);
+        out.putLong(wakeCycle);
+        out.putBoolean(blocked);
+        out.putInt(utilization);
+        out.putInt(epoch);
+        out.putLong(cpuCycles);
+        out.putInt(instructionPointer);
+        out.putInts(pageTable);
+        out.putLong(arrivalCycle);
+        out.putLong(readyCycle);
+        out.putLong(exitCycle);
+        out.putLong(blockedCycles);
+        out.putInt(majorFaults);
+        out.putInt(minorFaults);
+        out.putLong(pass);
+        out.putInt(level);
+        out.putLong(levelCycles);
+    }
+
+    /**
+     * Reads a process written by writeCheckpoint. It is not in any group
+     * until a scheduler adds it.
+     *
+     * @param images The program images, by index.
+     */
+    static ScheduledProcess readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images) throws IOException {
+        int id          = in.getInt();
+        int groupId     = in.getInt();
+        int[] groupPath = in.getInts();
+        int baseAddress = in.getInt();
+        int addressSize = in.getInt();
+        double weight   = in.getDouble();
+        int priority    = in.getInt();
+
+        ScheduledProcess p = new ScheduledProcess(id, groupId, baseAddress, addressSize, weight, priority);
+        p.groupPath   = groupPath;
+        p.setImage(images.get(in.getInt()));
+        p.wakeCycle   = in.getLong();
+        p.blocked     = in.getBoolean();
+        p.utilization = in.getInt();
+        p.epoch       = in.getInt();
+        p.cpuCycles   = in.getLong();
+        p.instructionPointer = in.getInt();
+        p.pageTable     = in.getInts();
+        p.arrivalCycle  = in.getLong();
+        p.readyCycle    = in.getLong();
+        p.exitCycle     = in.getLong();
+        p.blockedCycles = in.getLong();
+        p.majorFaults   = in.getInt();
+        p.minorFaults   = in.getInt();
+        p.pass          = in.getLong();
+        p.level         = in.getInt();
+        p.levelCycles   = in.getLong();
+        p.processPriority = p.calculateProcessPriority();
+
+        return p;
+    }
+
+    @Override
+    public int getHeapIndex() {
+        return heapIndex;
     }
 
-    public void incrementUtilization() {
-        this.utilization++;
+    @Override
+    public void setHeapIndex(int heapIndex) {
+        this.heapIndex = heapIndex;
     }
 }
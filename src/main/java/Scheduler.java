@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The scheduler of one CPU, whatever its policy.
+ *
+ * A scheduler keeps the clock, the ready and blocked processes of its CPU,
+ * and decides which ready process runs next. All methods other than
+ * submitProcess and handOverProcess must be called from the CPU's
+ * dispatching thread.
+ */
+interface Scheduler {
+    String FAIR_SHARE = "fair-share";
+    String STRIDE     = "stride";
+    String LOTTERY    = "lottery";
+    String MLFQ       = "mlfq";
+
+    /**
+     * @param policy           One of the policy names.
+     * @param quantum          Clock cycles per timer interrupt.
+     * @param groupUtilization Group utilization counters, shared with the
+     *                         schedulers of the other CPUs, or null when the
+     *                         scheduler runs alone.
+     * @param rng              Generator the lottery scheduler splits its
+     *                         own from; the other policies leave it alone.
+     * @return A new scheduler running the policy.
+     */
+    static Scheduler create(String policy, int quantum,
+                            ConcurrentHashMap<Integer, SharedUtilization> groupUtilization, SplitMixRandom rng) {
+        switch(policy) {
+            case FAIR_SHARE:
+                return new FairShareScheduler(groupUtilization);
+            case STRIDE:
+                return new StrideScheduler();
+            case LOTTERY:
+                return new LotteryScheduler(rng.split());
+            case MLFQ:
+                return new MultilevelFeedbackScheduler(quantum);
+            default:
+                throw new IllegalArgumentException("Unknown scheduler \"" + policy + "\".");
+        }
+    }
+
+    /**
+     * @return The name of the policy, as given to create.
+     */
+    String getPolicy();
+
+    /**
+     * @param decayInterval The number of cycles between decays of the
+     *                      policy's history, or 0 for none.
+     */
+    void setDecayInterval(long decayInterval);
+
+    /**
+     * Sets a group's share of the CPU.
+     *
+     * @param groupId The group's ID.
+     * @param share   Between 0 and 1.
+     */
+    void setGroupShare(int groupId, double share);
+
+    void addProcess(ScheduledProcess process);
+
+    /**
+     * Submits a process from any thread. The process becomes eligible the
+     * next time the dispatching thread picks a process.
+     */
+    void submitProcess(ScheduledProcess process);
+
+    /**
+     * Takes in a ready process another CPU's scheduler has given up, from
+     * any thread. It keeps the cycles it has waited, counted on this
+     * scheduler's clock once it is admitted.
+     *
+     * @param clock The other scheduler's clock.
+     */
+    void handOverProcess(ScheduledProcess process, long clock);
+
+    void removeProcess(ScheduledProcess process);
+
+    /**
+     * @return The ready process to run next, or null if none is ready.
+     */
+    ScheduledProcess getNextProcess();
+
+    /**
+     * Tells a timer interrupt whether to switch the running process out.
+     * Asks without picking, so the choice of later processes is the same
+     * as if the running process had been picked again.
+     *
+     * @param running The process picked last.
+     * @return True if another ready process would be picked over it.
+     */
+    boolean isOutranked(ScheduledProcess running);
+
+    /**
+     * Charges the running process for one cycle of CPU.
+     */
+    default void updateProcessUtilization(ScheduledProcess process) {
+        updateProcessUtilization(process, 1);
+    }
+
+    /**
+     * Charges the running process for several cycles of CPU at once, which
+     * must not span a decay.
+     */
+    void updateProcessUtilization(ScheduledProcess process, int cycles);
+
+    /**
+     * Blocks a process, taking it out of the ready queue.
+     *
+     * @param process The process to block.
+     * @param delay   The number of cycles the process is blocked for.
+     */
+    void blockProcess(ScheduledProcess process, int delay);
+
+    /**
+     * Advances the clock by one cycle and wakes the processes whose I/O has
+     * completed.
+     */
+    void updateBlockedProcesses();
+
+    /**
+     * Advances the clock by several cycles at once and wakes the processes
+     * whose I/O has completed in that time.
+     */
+    void advanceClock(long cycles);
+
+    /**
+     * Takes a ready process out of this scheduler, to be handed to another
+     * CPU.
+     *
+     * @return The process that was taken, or null if none is ready.
+     */
+    ScheduledProcess takeReadyProcess();
+
+    /**
+     * @return The process with the given ID, or null if it is not in this
+     * scheduler.
+     */
+    ScheduledProcess getProcess(int id);
+
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException;
+
+    /**
+     * Reads the state written by writeCheckpoint into an empty scheduler.
+     *
+     * @param images The program images, by index.
+     */
+    void readCheckpoint(Checkpoint.Reader in, List<ProgramCache.Image> images) throws IOException;
+
+    /**
+     * @return The number of clock cycles that have elapsed.
+     */
+    long getClock();
+
+    /**
+     * @return The clock cycle of the next decay, or Long.MAX_VALUE if there
+     * is none.
+     */
+    long getNextDecay();
+
+    int getReadyCount();
+
+    int getBlockedCount();
+
+    /**
+     * @return True if processes are still in the scheduler or submitted to it.
+     */
+    boolean hasProcesses();
+}
@@ -1,6 +1,10 @@
 import org.apache.commons.cli.*;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SchedulerCliConfigurationParser {
 
@@ -13,32 +17,232 @@ public class SchedulerCliConfigurationParser {
 
         config.setDefaultProcessWeight(weight);
         config.setDefaultProcessPriority(priority);
-        config.setFiles(parseFilesWithGroups(cli.getOptionValues("files")));
+        if(!cli.hasOption("files") && !cli.hasOption("trace") && !cli.hasOption("restore")) {
+            throw new IllegalArgumentException("No processes given. Expected -f, -t, both, or -R.");
+        }
+
+        config.setFiles(parseFilesWithGroups(cli.hasOption("files") ? cli.getOptionValues("files") : new String[0]));
+
+        if(cli.hasOption("groups")) {
+            parseGroups(cli.getOptionValue("groups"), config);
+        }
+        config.setTrace(cli.getOptionValue("trace"));
+
+        if(cli.hasOption("scheduler")) {
+            String policy = cli.getOptionValue("scheduler");
+
+            if(!policy.equals(Scheduler.FAIR_SHARE) && !policy.equals(Scheduler.STRIDE) &&
+                    !policy.equals(Scheduler.LOTTERY) && !policy.equals(Scheduler.MLFQ)) {
+                throw new IllegalArgumentException("Invalid scheduler \"" + policy + "\" given. Expected fair-share, " +
+                        "stride, lottery or mlfq.");
+            }
+
+            config.setSchedulerPolicy(policy);
+        }
+
+        config.setEventDriven(cli.hasOption("event-driven"));
+        config.setTickless(cli.hasOption("tickless"));
+
+        if(cli.hasOption("quantum")) {
+            int quantum = Integer.parseInt(cli.getOptionValue("quantum"));
+
+            if(quantum < 1) {
+                throw new IllegalArgumentException("Invalid quantum \"" + quantum + "\" given. Expected at least 1.");
+            }
+
+            config.setQuantum(quantum);
+        }
+
+        if(cli.hasOption("io-min")) {
+            int ioMin = Integer.parseInt(cli.getOptionValue("io-min"));
+
+            if(ioMin < 1) {
+                throw new IllegalArgumentException("Invalid minimum I/O time \"" + ioMin + "\" given. Expected at " +
+                        "least 1.");
+            }
+
+            config.setIoMin(ioMin);
+        }
+
+        if(cli.hasOption("io-dev")) {
+            int ioDev = Integer.parseInt(cli.getOptionValue("io-dev"));
+
+            if(ioDev < 0) {
+                throw new IllegalArgumentException("Invalid I/O time deviation \"" + ioDev + "\" given. Expected " +
+                        "at least 0.");
+            }
+
+            config.setIoDev(ioDev);
+        }
+
+        if(cli.hasOption("virtual-threads")) {
+            if(!ProcessThread.isSupported()) {
+                throw new IllegalArgumentException("Virtual threads need Java 21 or later, but this is Java " +
+                        Runtime.version().feature() + ".");
+            }
+
+            config.setProcessThreads(true);
+        }
+
+        if(cli.hasOption("cpus")) {
+            int cpus = Integer.parseInt(cli.getOptionValue("cpus"));
+
+            if(cpus < 1) {
+                throw new IllegalArgumentException("Invalid number of CPUs \"" + cpus + "\" given. Expected at least 1.");
+            }
+
+            config.setCpus(cpus);
+        }
+
+        if(cli.hasOption("seed")) {
+            config.setSeed(Long.parseLong(cli.getOptionValue("seed")));
+        }
+
+        if(cli.hasOption("replications")) {
+            int replications = Integer.parseInt(cli.getOptionValue("replications"));
+
+            if(replications < 1) {
+                throw new IllegalArgumentException("Invalid number of replications \"" + replications + "\" given. Expected at least 1.");
+            }
+
+            config.setReplications(replications);
+        }
+
+        if(cli.hasOption("verbosity")) {
+            int verbosity = Integer.parseInt(cli.getOptionValue("verbosity"));
+
+            if(verbosity < EventLog.VERBOSITY_SILENT || verbosity > EventLog.VERBOSITY_MEMORY) {
+                throw new IllegalArgumentException("Invalid verbosity \"" + verbosity + "\" given. Expected 0 to 4.");
+            }
+
+            config.setVerbosity(verbosity);
+        }
+
+        if(cli.hasOption("output-format")) {
+            String format = cli.getOptionValue("output-format");
+
+            if(!format.equals(EventLog.FORMAT_TEXT) && !format.equals(EventLog.FORMAT_CSV) && !format.equals(EventLog.FORMAT_BINARY)) {
+                throw new IllegalArgumentException("Invalid output format \"" + format + "\" given. Expected text, csv or binary.");
+            }
+
+            config.setOutputFormat(format);
+        }
+
+        if(cli.hasOption("decay")) {
+            long decay = Long.parseLong(cli.getOptionValue("decay"));
+
+            if(decay < 0) {
+                throw new IllegalArgumentException("Invalid decay interval \"" + decay + "\" given. Expected at least 0.");
+            }
+
+            config.setDecayInterval(decay);
+        }
+
+        if(cli.hasOption("memory")) {
+            int memory = Integer.parseInt(cli.getOptionValue("memory"));
+
+            if(memory < PagedMemory.PAGE_SIZE) {
+                throw new IllegalArgumentException("Invalid memory size \"" + memory + "\" given. Expected at least " +
+                        PagedMemory.PAGE_SIZE + ".");
+            }
+
+            config.setMemorySize(memory);
+        }
+
+        config.setMetricsFile(cli.getOptionValue("metrics"));
+
+        if(cli.hasOption("metrics-interval")) {
+            long interval = Long.parseLong(cli.getOptionValue("metrics-interval"));
+
+            if(interval < 1) {
+                throw new IllegalArgumentException("Invalid metrics interval \"" + interval + "\" given. Expected at " +
+                        "least 1.");
+            }
+
+            config.setMetricsInterval(interval);
+        }
+
+        config.setCheckpointFile(cli.getOptionValue("checkpoint"));
+        config.setRestoreFile(cli.getOptionValue("restore"));
+
+        if(cli.hasOption("checkpoint-interval")) {
+            long interval = Long.parseLong(cli.getOptionValue("checkpoint-interval"));
+
+            if(interval < 1) {
+                throw new IllegalArgumentException("Invalid checkpoint interval \"" + interval + "\" given. Expected " +
+                        "at least 1.");
+            }
+
+            config.setCheckpointInterval(interval);
+        }
 
         return config;
     }
 
-    @SuppressWarnings("unchecked")
-    private HashMap<String, Integer>[] parseFilesWithGroups(String[] files) {
-        HashMap<String, Integer>[] parsedFiles = new HashMap[files.length];
+    private List<SchedulerProcessConfiguration.ProcessFile> parseFilesWithGroups(String[] files) {
+        List<SchedulerProcessConfiguration.ProcessFile> parsedFiles = new ArrayList<>();
 
-        int x = 0;
         for(String file : files) {
             String[] parts = file.split(":");
 
-            if(parts.length != 2) {
-                throw new IllegalArgumentException("Invalid file name \"" + file + "\" given. Expected  {filename}:{group #}.");
+            if(parts.length < 2 || parts.length > 4) {
+                throw new IllegalArgumentException("Invalid file name \"" + file + "\" given. Expected  " +
+                        "{filename}:{group #}[:{weight}[:{priority}]].");
             }
 
-            HashMap<String, Integer> map = new HashMap<>();
-            map.put(parts[0], Integer.parseInt(parts[1]));
-            parsedFiles[x] = map;
-            x++;
+            SchedulerProcessConfiguration.ProcessFile parsed = new SchedulerProcessConfiguration.ProcessFile();
+            parsed.file     = parts[0];
+            parsed.groupId  = Integer.parseInt(parts[1]);
+            parsed.weight   = parts.length > 2 ? Double.valueOf(parts[2]) : null;
+            parsed.priority = parts.length > 3 ? Integer.valueOf(parts[3]) : null;
+            parsedFiles.add(parsed);
         }
 
         return parsedFiles;
     }
 
+    /**
+     * Reads the group settings file: one group per line, as
+     * {group #} {share} [{weight} [{priority}]]. The group may be given as
+     * the path of groups down to it, such as 1/3/7 for group 7 in group 3 in
+     * group 1, whose share is then its share of group 3.
+     */
+    private void parseGroups(String file, SchedulerProcessConfiguration config) {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while((line = in.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+");
+                if(parts.length < 2 || parts.length > 4) {
+                    throw new IllegalArgumentException("Invalid group \"" + line + "\" given. Expected " +
+                            "{group #}[/{group #}...] {share} [{weight} [{priority}]].");
+                }
+
+                String[] path = parts[0].split("/");
+                int groupId = Integer.parseInt(path[path.length - 1]);
+                for(int i = 1; i < path.length; i++) {
+                    config.setGroupParent(Integer.parseInt(path[i]), Integer.parseInt(path[i - 1]));
+                }
+
+                SchedulerProcessConfiguration.GroupSettings group = new SchedulerProcessConfiguration.GroupSettings();
+                group.share    = Double.parseDouble(parts[1]);
+                group.weight   = parts.length > 2 ? Double.valueOf(parts[2]) : null;
+                group.priority = parts.length > 3 ? Integer.valueOf(parts[3]) : null;
+
+                if(group.share <= 0 || group.share > 1) {
+                    throw new IllegalArgumentException("Invalid group share \"" + parts[1] + "\" given. Expected " +
+                            "0 < x <= 1.");
+                }
+
+                config.setGroup(groupId, group);
+            }
+        } catch(IOException e) {
+            throw new IllegalArgumentException("Cannot read group file \"" + file + "\": " + e.getMessage());
+        }
+    }
+
     private CommandLine parseArgs(String[] args) {
         Options options = initializeParserOptions();
 
@@ -72,11 +276,111 @@ public class SchedulerCliConfigurationParser {
 
         //Processes to be executed.
         Option processesArg = new Option("f", "files", true, "A list of processes (pexe files) to be executed, followed by " +
-                "the group id. (i.e filename.pexe:5 filename2:3 ...).");
-        processesArg.setRequired(true);
+                "the group id, and optionally weight and priority. (i.e filename.pexe:5 filename2:3:0.8:40 ...).");
         processesArg.setArgs(Option.UNLIMITED_VALUES);
         options.addOption(processesArg);
 
+        //Group shares and defaults
+        Option groupsArg = new Option("g", "groups", true, "A file of group settings, one group per line: group id, " +
+                "share of the CPU (default 0.5), and optionally the weight and priority of its processes. A group may be " +
+                "given as its path, such as 1/3/7, with its share of its parent's.");
+        options.addOption(groupsArg);
+
+        //Processes arriving while the simulation runs
+        Option traceArg = new Option("t", "trace", true, "A trace of processes arriving while the simulation runs, " +
+                "one per line: arrival cycle, pexe file, group id, and optionally weight and priority.");
+        options.addOption(traceArg);
+
+        //Scheduling policy
+        Option schedulerArg = new Option("S", "scheduler", true, "Scheduling policy of every CPU: fair-share " +
+                "(default), stride, lottery or mlfq.");
+        options.addOption(schedulerArg);
+
+        //Timer and I/O times
+        Option quantumArg = new Option("q", "quantum", true, "Clock cycles per timer interrupt (default " +
+                Sim.CLOCK_PER_TIMER + ").");
+        options.addOption(quantumArg);
+
+        Option ioMinArg = new Option(null, "io-min", true, "Minimum clock cycles an I/O takes (default " +
+                Sim.CLOCK_IO_MIN + ").");
+        options.addOption(ioMinArg);
+
+        Option ioDevArg = new Option(null, "io-dev", true, "Standard deviation of the clock cycles an I/O takes " +
+                "beyond the minimum (default " + Sim.CLOCK_IO_DEV + ").");
+        options.addOption(ioDevArg);
+
+        //Only switch processes on a timer interrupt when another would be picked
+        Option ticklessArg = new Option("T", "tickless", false, "Leave the running process be at a timer " +
+                "interrupt when no other ready process would be picked over it.");
+        options.addOption(ticklessArg);
+
+        //Skip idle clock cycles instead of stepping through them
+        Option eventDrivenArg = new Option("e", "event-driven", false, "Jump the clock straight to the next event " +
+                "instead of stepping through idle cycles one at a time.");
+        options.addOption(eventDrivenArg);
+
+        //Thread per process
+        Option threadsArg = new Option("V", "virtual-threads", false, "Run every process on its own virtual " +
+                "thread, which parks whenever the scheduler switches it out.");
+        options.addOption(threadsArg);
+
+        //Number of simulated CPUs
+        Option cpusArg = new Option("c", "cpus", true, "The number of simulated CPUs, each run on its own thread " +
+                "(default 1).");
+        options.addOption(cpusArg);
+
+        //Random number generator seed
+        Option seedArg = new Option("s", "seed", true, "Seed for the random number generator, to make runs " +
+                "on one CPU reproducible.");
+        options.addOption(seedArg);
+
+        //Independent replications of the same run
+        Option replicationsArg = new Option("r", "replications", true, "Run this many independent replications in " +
+                "parallel and print their statistics instead of the scheduler's actions.");
+        options.addOption(replicationsArg);
+
+        //How much of the scheduler's actions to print
+        Option verbosityArg = new Option("v", "verbosity", true, "0 prints nothing, 1 exits and errors, 2 also loads " +
+                "and blocks, 3 (default) also idle CPUs, 4 also page faults.");
+        options.addOption(verbosityArg);
+
+        //How to print the scheduler's actions
+        Option formatArg = new Option("o", "output-format", true, "Format of the scheduler's actions: text (default), " +
+                "csv or binary.");
+        options.addOption(formatArg);
+
+        //Utilization decay
+        Option decayArg = new Option("d", "decay", true, "Halve process and group utilization every this many " +
+                "cycles (default 0, never).");
+        options.addOption(decayArg);
+
+        //Size of the simulated physical memory
+        Option memoryArg = new Option("m", "memory", true, "Physical memory size in bytes, paged in on demand " +
+                "(default 65536).");
+        options.addOption(memoryArg);
+
+        //Periodic metrics snapshots
+        Option metricsArg = new Option("M", "metrics", true, "Write a JSON line of live scheduler metrics to this " +
+                "file at a fixed interval.");
+        options.addOption(metricsArg);
+
+        Option metricsIntervalArg = new Option("I", "metrics-interval", true, "Milliseconds between metrics " +
+                "snapshots (default 1000).");
+        options.addOption(metricsIntervalArg);
+
+        //Checkpoint and restore
+        Option checkpointArg = new Option("k", "checkpoint", true, "Write a checkpoint of the simulation to this " +
+                "file at a fixed interval, replacing the previous one.");
+        options.addOption(checkpointArg);
+
+        Option checkpointIntervalArg = new Option("K", "checkpoint-interval", true, "Clock cycles between " +
+                "checkpoints (default 1000000).");
+        options.addOption(checkpointIntervalArg);
+
+        Option restoreArg = new Option("R", "restore", true, "Resume the simulation from this checkpoint instead " +
+                "of loading -f and -t.");
+        options.addOption(restoreArg);
+
         return options;
     }
 
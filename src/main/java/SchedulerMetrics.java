@@ -0,0 +1,326 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live metrics of one simulation, readable from any thread while the CPUs
+ * run.
+ *
+ * Every CPU counts into its own CpuMetrics with plain writes from the
+ * thread running it, and publishes the counts to volatile fields at each dispatch, so
+ * counting costs the simulation next to nothing. Readers add up the
+ * published counts of every CPU, which are at most one time slice behind.
+ *
+ * The metrics can be exposed as an MBean, and written as one JSON object per
+ * line to a snapshot file at a fixed interval.
+ */
+public class SchedulerMetrics implements SchedulerMetricsMBean {
+    static final String OBJECT_NAME = "Sim:type=SchedulerMetrics";
+
+    /**
+     * Counters of one CPU. The plain fields may only be written by the
+     * thread running the CPU.
+     */
+    static class CpuMetrics {
+        long instructions;
+        long contextSwitches;
+        LatencyHistogram dispatchLatency = new LatencyHistogram();
+
+        // as of the last dispatch
+        private volatile long publishedInstructions;
+        private volatile long publishedContextSwitches;
+        private volatile int readyProcesses;
+        private volatile int blockedProcesses;
+
+        /**
+         * Makes the counts visible to other threads.
+         */
+        void publish(int ready, int blocked) {
+            readyProcesses   = ready;
+            blockedProcesses = blocked;
+            publishedContextSwitches = contextSwitches;
+            publishedInstructions    = instructions;
+        }
+    }
+
+    private SchedulerProcessConfiguration config;
+    private CpuMetrics[] cpus;
+
+    // CPU cycles used by the processes of each group, added when they switch out
+    private ConcurrentHashMap<Integer, LongAdder> groupCycles;
+
+    private volatile long startTime;
+
+    // periodic snapshots, or null
+    private ScheduledExecutorService snapshots;
+    private PrintWriter snapshotOut;
+    private long lastSnapshotTime;
+    private long lastInstructions;
+    private long lastContextSwitches;
+
+    /**
+     * @param cpus   The number of CPUs.
+     * @param config The simulation configuration.
+     */
+    SchedulerMetrics(int cpus, SchedulerProcessConfiguration config) {
+        this.config      = config;
+        this.cpus        = new CpuMetrics[cpus];
+        this.groupCycles = new ConcurrentHashMap<>();
+        this.startTime   = System.nanoTime();
+
+        for(int i = 0; i < cpus; i++) {
+            this.cpus[i] = new CpuMetrics();
+        }
+    }
+
+    CpuMetrics getCpu(int id) {
+        return cpus[id];
+    }
+
+    /**
+     * Starts the clock the rates are measured against.
+     */
+    synchronized void start() {
+        startTime = System.nanoTime();
+        lastSnapshotTime = startTime;
+    }
+
+    /**
+     * @return The counter of the CPU cycles the group's processes used,
+     * for the CPUs to add to as they switch processes out. Looked up once
+     * per process, so switching boxes no group ID.
+     */
+    LongAdder getGroupCycles(int groupId) {
+        return groupCycles.computeIfAbsent(groupId, id -> new LongAdder());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     */
+    void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    void unregister() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Writes a snapshot to a file at a fixed interval, on a background thread.
+     *
+     * @param file     The snapshot file, overwritten.
+     * @param interval Milliseconds between snapshots.
+     */
+    void startSnapshots(String file, long interval) throws IOException {
+        snapshotOut = new PrintWriter(new FileWriter(file));
+
+        snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots.scheduleAtFixedRate(this::writeSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the snapshots, writing one last one for the end of the run.
+     */
+    void stopSnapshots() throws InterruptedException {
+        if(snapshots == null) return;
+
+        snapshots.shutdown();
+        snapshots.awaitTermination(1, TimeUnit.MINUTES);
+
+        writeSnapshot();
+        snapshotOut.close();
+    }
+
+    @Override
+    public long getInstructions() {
+        long instructions = 0;
+        for(CpuMetrics cpu : cpus) {
+            instructions += cpu.publishedInstructions;
+        }
+
+        return instructions;
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return perSecond(getInstructions(), System.nanoTime() - startTime);
+    }
+
+    @Override
+    public long getContextSwitches() {
+        long switches = 0;
+        for(CpuMetrics cpu : cpus) {
+            switches += cpu.publishedContextSwitches;
+        }
+
+        return switches;
+    }
+
+    @Override
+    public double getContextSwitchesPerSecond() {
+        return perSecond(getContextSwitches(), System.nanoTime() - startTime);
+    }
+
+    @Override
+    public int getReadyProcesses() {
+        int ready = 0;
+        for(CpuMetrics cpu : cpus) {
+            ready += cpu.readyProcesses;
+        }
+
+        return ready;
+    }
+
+    @Override
+    public int getBlockedProcesses() {
+        int blocked = 0;
+        for(CpuMetrics cpu : cpus) {
+            blocked += cpu.blockedProcesses;
+        }
+
+        return blocked;
+    }
+
+    @Override
+    public long getDispatchLatencyP50() {
+        return getDispatchLatency().getValueAtQuantile(0.5);
+    }
+
+    @Override
+    public long getDispatchLatencyP90() {
+        return getDispatchLatency().getValueAtQuantile(0.9);
+    }
+
+    @Override
+    public long getDispatchLatencyP99() {
+        return getDispatchLatency().getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getDispatchLatencyP999() {
+        return getDispatchLatency().getValueAtQuantile(0.999);
+    }
+
+    @Override
+    public long getDispatchLatencyMax() {
+        return getDispatchLatency().getMax();
+    }
+
+    @Override
+    public double getDispatchLatencyMean() {
+        return getDispatchLatency().getMean();
+    }
+
+    @Override
+    public String[] getGroupShares() {
+        Map<Integer, double[]> shares = groupShares();
+        String[] result = new String[shares.size()];
+
+        int i = 0;
+        for(Map.Entry<Integer, double[]> group : shares.entrySet()) {
+            result[i++] = String.format(Locale.ROOT, "group %d: %.4f of the CPU, target %.4f",
+                    group.getKey(), group.getValue()[0], group.getValue()[1]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The dispatch latencies of every CPU together.
+     */
+    private LatencyHistogram getDispatchLatency() {
+        LatencyHistogram latency = new LatencyHistogram();
+        for(CpuMetrics cpu : cpus) {
+            latency.add(cpu.dispatchLatency);
+        }
+
+        return latency;
+    }
+
+    /**
+     * @return For each group seen so far, its share of the CPU cycles used
+     * and its configured share relative to the other groups seen.
+     */
+    private Map<Integer, double[]> groupShares() {
+        TreeMap<Integer, Long> cycles = new TreeMap<>();
+        long totalCycles = 0;
+        double totalShare = 0;
+
+        for(Map.Entry<Integer, LongAdder> group : groupCycles.entrySet()) {
+            long sum = group.getValue().sum();
+            cycles.put(group.getKey(), sum);
+            totalCycles += sum;
+            totalShare  += config.getEffectiveGroupShare(group.getKey());
+        }
+
+        TreeMap<Integer, double[]> shares = new TreeMap<>();
+        for(Map.Entry<Integer, Long> group : cycles.entrySet()) {
+            shares.put(group.getKey(), new double[] {
+                totalCycles > 0 ? (double) group.getValue() / totalCycles : 0,
+                config.getEffectiveGroupShare(group.getKey()) / totalShare
+            });
+        }
+
+        return shares;
+    }
+
+    /**
+     * Writes one line of JSON with the counts, the rates since the last
+     * snapshot, and the latency and group shares so far.
+     */
+    private synchronized void writeSnapshot() {
+        long now = System.nanoTime();
+        long instructions = getInstructions();
+        long switches = getContextSwitches();
+        LatencyHistogram latency = getDispatchLatency();
+
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "{\"time_ms\":%d,\"instructions\":%d,\"instructions_per_second\":%.1f," +
+                        "\"context_switches\":%d,\"context_switches_per_second\":%.1f,\"ready\":%d,\"blocked\":%d,",
+                TimeUnit.NANOSECONDS.toMillis(now - startTime),
+                instructions, perSecond(instructions - lastInstructions, now - lastSnapshotTime),
+                switches, perSecond(switches - lastContextSwitches, now - lastSnapshotTime),
+                getReadyProcesses(), getBlockedProcesses()));
+
+        line.append(String.format(Locale.ROOT, "\"dispatch_latency\":{\"count\":%d,\"p50\":%d,\"p90\":%d,\"p99\":%d," +
+                        "\"p999\":%d,\"max\":%d,\"mean\":%.2f},",
+                latency.getCount(), latency.getValueAtQuantile(0.5), latency.getValueAtQuantile(0.9),
+                latency.getValueAtQuantile(0.99), latency.getValueAtQuantile(0.999), latency.getMax(),
+                latency.getMean()));
+
+        line.append("\"groups\":[");
+        String separator = "";
+        for(Map.Entry<Integer, double[]> group : groupShares().entrySet()) {
+            line.append(String.format(Locale.ROOT, "%s{\"group\":%d,\"share\":%.4f,\"target\":%.4f}",
+                    separator, group.getKey(), group.getValue()[0], group.getValue()[1]));
+            separator = ",";
+        }
+        line.append("]}");
+
+        snapshotOut.println(line);
+        snapshotOut.flush();
+
+        lastSnapshotTime    = now;
+        lastInstructions    = instructions;
+        lastContextSwitches = switches;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Live metrics of a running simulation, as seen through JMX.
+ *
+ * Rates are averaged over the time since the simulation started. Dispatch
+ * latency is the number of clock cycles a process waited between becoming
+ * ready and being dispatched.
+ */
+public interface SchedulerMetricsMBean {
+    long getInstructions();
+
+    double getInstructionsPerSecond();
+
+    long getContextSwitches();
+
+    double getContextSwitchesPerSecond();
+
+    int getReadyProcesses();
+
+    int getBlockedProcesses();
+
+    long getDispatchLatencyP50();
+
+    long getDispatchLatencyP90();
+
+    long getDispatchLatencyP99();
+
+    long getDispatchLatencyP999();
+
+    long getDispatchLatencyMax();
+
+    double getDispatchLatencyMean();
+
+    /**
+     * @return One entry per group: its ID, its share of the CPU so far and
+     * its target share.
+     */
+    String[] getGroupShares();
+}
@@ -1,9 +1,56 @@
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 class SchedulerProcessConfiguration {
+    // group share giving the textbook priority formula, groupUtil / 2
+    static final double DEFAULT_GROUP_SHARE = 0.5;
+
+    /**
+     * One program to load, with its own weight and priority if given.
+     */
+    static class ProcessFile {
+        String file;
+        int groupId;
+        Double weight;      // null for the group's default
+        Integer priority;   // null for the group's default
+    }
+
+    /**
+     * Settings of one group, and defaults for its processes.
+     */
+    static class GroupSettings {
+        double share = DEFAULT_GROUP_SHARE;
+        Double weight;      // null for the -w default
+        Integer priority;   // null for the -p default
+    }
+
     private double defaultProcessWeight;
     private int defaultProcessPriority;
-    private HashMap<String, Integer>[] files;
+    private List<ProcessFile> files = new ArrayList<>();
+    private HashMap<Integer, GroupSettings> groups = new HashMap<>();
+    private HashMap<Integer, Integer> groupParents = new HashMap<>();
+    private String schedulerPolicy = Scheduler.FAIR_SHARE;
+    private int quantum = Sim.CLOCK_PER_TIMER;
+    private int ioMin = Sim.CLOCK_IO_MIN;
+    private int ioDev = Sim.CLOCK_IO_DEV;
+    private boolean tickless;
+    private boolean eventDriven;
+    private boolean processThreads;
+    private int cpus = 1;
+    private Long seed;
+    private int replications = 1;
+    private int verbosity = EventLog.VERBOSITY_ALL;
+    private String outputFormat = EventLog.FORMAT_TEXT;
+    private int memorySize = 65536;
+    private String trace;
+    private long decayInterval;
+    private String metricsFile;
+    private long metricsInterval = 1000;
+    private String checkpointFile;
+    private long checkpointInterval = 1000000;
+    private String restoreFile;
 
     double getDefaultProcessWeight() {
         return defaultProcessWeight;
@@ -21,11 +68,314 @@ class SchedulerProcessConfiguration {
         this.defaultProcessPriority = defaultProcessPriority;
     }
 
-    HashMap[] getFiles() {
+    List<ProcessFile> getFiles() {
         return files;
     }
 
-    void setFiles(HashMap<String, Integer>[] files) {
+    void setFiles(List<ProcessFile> files) {
         this.files = files;
     }
+
+    /**
+     * Adds a program to load with the group's default weight and priority.
+     */
+    void addFile(String file, int groupId) {
+        ProcessFile processFile = new ProcessFile();
+        processFile.file    = file;
+        processFile.groupId = groupId;
+        files.add(processFile);
+    }
+
+    /**
+     * @return The groups given settings, by group ID.
+     */
+    Map<Integer, GroupSettings> getGroups() {
+        return groups;
+    }
+
+    void setGroup(int groupId, GroupSettings settings) {
+        groups.put(groupId, settings);
+    }
+
+    /**
+     * @return The group's share of the CPU, between 0 and 1.
+     */
+    double getGroupShare(int groupId) {
+        GroupSettings group = groups.get(groupId);
+        return group != null ? group.share : DEFAULT_GROUP_SHARE;
+    }
+
+    /**
+     * @return The group's share of the whole CPU: its own share of its
+     * parent's, times the parent's, and so on up to the top.
+     */
+    double getEffectiveGroupShare(int groupId) {
+        double share = getGroupShare(groupId);
+        for(int id : getGroupPath(groupId)) {
+            share *= getGroupShare(id);
+        }
+
+        return share;
+    }
+
+    /**
+     * Places a group under another. A group has at most one parent, and no
+     * group may end up under itself.
+     */
+    void setGroupParent(int groupId, int parentId) {
+        Integer parent = groupParents.get(groupId);
+        if(parent != null && parent != parentId) {
+            throw new IllegalArgumentException("Group " + groupId + " is already under group " + parent + ", not " +
+                    parentId + ".");
+        }
+
+        for(Integer id = parentId; id != null; id = groupParents.get(id)) {
+            if(id == groupId) {
+                throw new IllegalArgumentException("Group " + groupId + " cannot be under itself.");
+            }
+        }
+
+        groupParents.put(groupId, parentId);
+    }
+
+    /**
+     * @return The IDs of the groups above the group, outermost first, or an
+     * empty array for a group at the top.
+     */
+    int[] getGroupPath(int groupId) {
+        int depth = 0;
+        for(Integer id = groupParents.get(groupId); id != null; id = groupParents.get(id)) {
+            depth++;
+        }
+
+        int[] path = new int[depth];
+        for(Integer id = groupParents.get(groupId); id != null; id = groupParents.get(id)) {
+            path[--depth] = id;
+        }
+
+        return path;
+    }
+
+    /**
+     * @return The weight of processes in the group not given one of their own.
+     */
+    double getProcessWeight(int groupId) {
+        GroupSettings group = groups.get(groupId);
+        return group != null && group.weight != null ? group.weight : defaultProcessWeight;
+    }
+
+    /**
+     * @return The priority of processes in the group not given one of their own.
+     */
+    int getProcessPriority(int groupId) {
+        GroupSettings group = groups.get(groupId);
+        return group != null && group.priority != null ? group.priority : defaultProcessPriority;
+    }
+
+    /**
+     * @return The name of the scheduling policy every CPU runs.
+     */
+    String getSchedulerPolicy() {
+        return schedulerPolicy;
+    }
+
+    void setSchedulerPolicy(String schedulerPolicy) {
+        this.schedulerPolicy = schedulerPolicy;
+    }
+
+    /**
+     * @return Clock cycles per timer interrupt.
+     */
+    int getQuantum() {
+        return quantum;
+    }
+
+    void setQuantum(int quantum) {
+        this.quantum = quantum;
+    }
+
+    /**
+     * @return The minimum number of cycles an I/O takes.
+     */
+    int getIoMin() {
+        return ioMin;
+    }
+
+    void setIoMin(int ioMin) {
+        this.ioMin = ioMin;
+    }
+
+    /**
+     * @return The standard deviation of the cycles an I/O takes beyond the
+     * minimum.
+     */
+    int getIoDev() {
+        return ioDev;
+    }
+
+    void setIoDev(int ioDev) {
+        this.ioDev = ioDev;
+    }
+
+    /**
+     * @return True if a timer interrupt leaves the running process be when
+     * no other process would be picked over it.
+     */
+    boolean isTickless() {
+        return tickless;
+    }
+
+    void setTickless(boolean tickless) {
+        this.tickless = tickless;
+    }
+
+    boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * @return True if every process runs on its own thread.
+     */
+    boolean isProcessThreads() {
+        return processThreads;
+    }
+
+    void setProcessThreads(boolean processThreads) {
+        this.processThreads = processThreads;
+    }
+
+    int getCpus() {
+        return cpus;
+    }
+
+    void setCpus(int cpus) {
+        this.cpus = cpus;
+    }
+
+    boolean hasSeed() {
+        return seed != null;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    int getReplications() {
+        return replications;
+    }
+
+    void setReplications(int replications) {
+        this.replications = replications;
+    }
+
+    int getVerbosity() {
+        return verbosity;
+    }
+
+    void setVerbosity(int verbosity) {
+        this.verbosity = verbosity;
+    }
+
+    String getOutputFormat() {
+        return outputFormat;
+    }
+
+    void setOutputFormat(String outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    int getMemorySize() {
+        return memorySize;
+    }
+
+    void setMemorySize(int memorySize) {
+        this.memorySize = memorySize;
+    }
+
+    /**
+     * @return The trace of processes arriving while the simulation runs,
+     * or null if there is none.
+     */
+    String getTrace() {
+        return trace;
+    }
+
+    void setTrace(String trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return The number of cycles between halvings of the utilization, or
+     * 0 if it never decays.
+     */
+    long getDecayInterval() {
+        return decayInterval;
+    }
+
+    void setDecayInterval(long decayInterval) {
+        this.decayInterval = decayInterval;
+    }
+
+    /**
+     * @return The file metrics snapshots are written to, or null for none.
+     */
+    String getMetricsFile() {
+        return metricsFile;
+    }
+
+    void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    /**
+     * @return Milliseconds between metrics snapshots.
+     */
+    long getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    void setMetricsInterval(long metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * @return The file checkpoints are written to, or null for none.
+     */
+    String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    void setCheckpointFile(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * @return Clock cycles between checkpoints.
+     */
+    long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * @return The checkpoint to resume from, or null to start afresh.
+     */
+    String getRestoreFile() {
+        return restoreFile;
+    }
+
+    void setRestoreFile(String restoreFile) {
+        this.restoreFile = restoreFile;
+    }
 }
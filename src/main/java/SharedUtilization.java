@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A group's utilization counter, shared by the schedulers of every CPU.
+ *
+ * Any thread can add to it. With decay, each scheduler asks for the counter
+ * to be decayed to its own epoch, and only the first to ask for a given
+ * epoch halves it, so the counter is halved once per interval however many
+ * CPUs there are.
+ *
+ * The count and the epoch it was last decayed to are packed into one long,
+ * so a decay swaps both at once, and no thread sees the new epoch with the
+ * count not yet halved. The count saturates at Integer.MAX_VALUE, as the
+ * schedulers keep utilization in an int.
+ */
+class SharedUtilization {
+    private AtomicLong state;
+
+    SharedUtilization() {
+        this.state = new AtomicLong(pack(0, 1));
+    }
+
+    void add(long cycles) {
+        long s;
+        do {
+            s = state.get();
+        } while(!state.compareAndSet(s, pack(epoch(s), Math.min(count(s) + cycles, Integer.MAX_VALUE))));
+    }
+
+    long sum() {
+        return count(state.get());
+    }
+
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        long s = state.get();
+        out.putLong(count(s));
+        out.putInt(epoch(s));
+    }
+
+    static SharedUtilization readCheckpoint(Checkpoint.Reader in) throws IOException {
+        SharedUtilization utilization = new SharedUtilization();
+        long count = Math.min(in.getLong(), Integer.MAX_VALUE);
+        utilization.state.set(pack(in.getInt(), count));
+        return utilization;
+    }
+
+    /**
+     * Halves the counter once for every decay interval since it was last
+     * decayed.
+     *
+     * @param target The epoch to decay to.
+     */
+    void decayTo(int target) {
+        long s;
+        while(epoch(s = state.get()) < target) {
+            long decayed = ScheduledProcess.decay(count(s), target - epoch(s));
+            if(state.compareAndSet(s, pack(target, decayed))) return;
+        }
+    }
+
+    private static long pack(int epoch, long count) {
+        return (long) epoch << 32 | count;
+    }
+
+    private static int epoch(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static long count(long state) {
+        return state & 0xffffffffL;
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * One run of the simulator, with its own memory, processes and CPUs.
+ *
+ * Nothing is shared between two simulations, so several can run side by
+ * side on different threads.
+ */
+class Simulation {
+    // simulated physical memory, paged in from the program images
+    private PagedMemory memory;
+
+    // program images, shared by every process running them
+    private ProgramCache images = new ProgramCache();
+
+    // next available process ID
+    private int nextProcId = 0;
+
+    private SchedulerProcessConfiguration config;
+
+    // live metrics of the run
+    private SchedulerMetrics metrics;
+
+    /**
+     * Simulated CPUs.
+     *
+     * Each CPU has its own scheduler, which handles process queuing
+     * operations.
+     */
+    private CpuCluster cluster;
+
+    // every process loaded, for the statistics, or null if they are not kept
+    private ArrayList<ScheduledProcess> processes;
+
+    /**
+     * @param config The simulation configuration.
+     * @param rng    Random number generator for branches and I/O times.
+     * @param log    Where the scheduler's actions are logged, or null to
+     *               run silently.
+     */
+    Simulation(SchedulerProcessConfiguration config, SplitMixRandom rng, EventLog log) {
+        this.config    = config;
+        this.memory    = new PagedMemory(config.getMemorySize());
+        this.metrics   = new SchedulerMetrics(config.getCpus(), config);
+        this.cluster   = new CpuCluster(config.getCpus(), config, memory, metrics, rng, log);
+    }
+
+    /**
+     * Keeps every process for getStatistics. Without it, exited processes
+     * are forgotten, so a long trace runs in bounded memory.
+     */
+    void keepStatistics() {
+        processes = new ArrayList<>();
+    }
+
+    /**
+     * Load all the programs given in the configuration, and open the trace
+     * of processes arriving later.
+     */
+    void loadPrograms() throws IOException {
+        for(SchedulerProcessConfiguration.ProcessFile file : config.getFiles()) {
+            loadProgram(file);
+        }
+
+        if(config.getTrace() != null) {
+            cluster.setArrivals(new TraceArrivals(new File(config.getTrace()), this, config));
+        }
+    }
+
+    /**
+     * Restores the state of a checkpoint instead of loading the programs.
+     * Processes restored are not kept for getStatistics.
+     */
+    void restore(File file) throws IOException {
+        try(Checkpoint.Reader in = new Checkpoint.Reader(file)) {
+            nextProcId = in.getInt();
+            images.readCheckpoint(in);
+            memory.readCheckpoint(in, images.getImages());
+            cluster.readCheckpoint(in, images.getImages(), this, config);
+        }
+    }
+
+    /**
+     * Writes a checkpoint every interval cycles while the simulation runs,
+     * replacing the previous one.
+     *
+     * @param file     The checkpoint file.
+     * @param interval The number of cycles between checkpoints.
+     */
+    void setCheckpoints(File file, long interval) {
+        cluster.setCheckpoints(interval, () -> writeCheckpoint(file));
+    }
+
+    /**
+     * Runs until every process has exited.
+     */
+    void run() throws InterruptedException {
+        metrics.start();
+        cluster.run();
+    }
+
+    SchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Statistics for the processes of a finished run.
+     */
+    SimulationStatistics getStatistics() {
+        if(processes == null) {
+            throw new IllegalStateException("Statistics are only kept after keepStatistics is called.");
+        }
+
+        return new SimulationStatistics(processes, cluster.getClock(), memory);
+    }
+
+    private void writeCheckpoint(File file) {
+        try(Checkpoint.Writer out = new Checkpoint.Writer(file)) {
+            out.putInt(nextProcId);
+            images.writeCheckpoint(out);
+            memory.writeCheckpoint(out);
+            cluster.writeCheckpoint(out);
+            out.finish();
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint " + file);
+        }
+    }
+
+    /**
+     * Load one program, add it to the end of the ready queue.
+     */
+    private void loadProgram(SchedulerProcessConfiguration.ProcessFile file) {
+        double weight = file.weight != null ? file.weight : config.getProcessWeight(file.groupId);
+        int priority = file.priority != null ? file.priority : config.getProcessPriority(file.groupId);
+
+        ScheduledProcess proc = createProcess(file.file, file.groupId, weight, priority);
+
+        if(proc != null) {
+            cluster.addProcess(proc);
+        }
+    }
+
+    /**
+     * Create a process running a program.
+     *
+     * @return The process, or null if the program could not be loaded.
+     */
+    synchronized ScheduledProcess createProcess(String program, int groupId, double weight, int priority) {
+        try {
+            // load the program, unless the same one is already loaded
+            ProgramCache.Image image = images.load(new File(program));
+
+            // @todo create the process, add to the appropriate queue
+            ScheduledProcess proc = new ScheduledProcess(
+                nextProcId,                         //Process ID
+                groupId,                            //Group ID
+                0,                                  //Base address (virtual)
+                image.size,                         //Process size
+                weight,                             //Weight weight
+                priority                            //Base priority
+            );
+            proc.setGroupPath(config.getGroupPath(groupId));
+            proc.setImage(image);
+            proc.setInstructionPointer(image.entry);
+
+            if(processes != null) {
+                processes.add(proc);
+            }
+
+            // update values
+            nextProcId++;
+            return proc;
+        } catch (Exception e) {
+            System.err.println("Error loading program " + program);
+            return null;
+        }
+    }
+}
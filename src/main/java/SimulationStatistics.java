@@ -0,0 +1,122 @@
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Per-process and per-group statistics of one finished simulation.
+ *
+ * All times are in clock cycles. A process's wait time is the time it spent
+ * neither running nor blocked on I/O. CPU share is the fraction of all
+ * executed instructions that a process or group executed.
+ *
+ * With several CPUs each CPU has its own clock, so a process handed over
+ * between CPUs is timed on the clock of the CPU it exited on.
+ *
+ * A major page fault loaded a page into memory; a minor one mapped a page
+ * already there for another process.
+ */
+class SimulationStatistics {
+    static class ProcessStatistics {
+        int id;
+        int groupId;
+        long turnaround;
+        long wait;
+        double cpuShare;
+        int majorFaults;
+        int minorFaults;
+    }
+
+    static class GroupStatistics {
+        int groupId;
+        long cpu;
+        double cpuShare;
+        double meanTurnaround;
+        int processes;
+    }
+
+    private TreeMap<Integer, ProcessStatistics> processes;
+    private TreeMap<Integer, GroupStatistics> groups;
+    private long cycles;
+    private long instructions;
+    private long majorFaults;
+    private long minorFaults;
+    private long evictions;
+
+    SimulationStatistics(List<ScheduledProcess> finished, long cycles, PagedMemory memory) {
+        this.processes   = new TreeMap<>();
+        this.groups      = new TreeMap<>();
+        this.cycles      = cycles;
+        this.majorFaults = memory.getMajorFaults();
+        this.minorFaults = memory.getMinorFaults();
+        this.evictions   = memory.getEvictions();
+
+        long totalCpu = 0;
+        for(ScheduledProcess p : finished) {
+            totalCpu += p.getCpuCycles();
+        }
+
+        for(ScheduledProcess p : finished) {
+            ProcessStatistics stats = new ProcessStatistics();
+            stats.id         = p.getId();
+            stats.groupId    = p.getGroupId();
+            stats.turnaround = p.getExitCycle() - p.getArrivalCycle();
+            stats.wait       = stats.turnaround - p.getCpuCycles() - p.getBlockedCycles();
+            stats.cpuShare   = totalCpu > 0 ? (double) p.getCpuCycles() / totalCpu : 0;
+            stats.majorFaults = p.getMajorFaults();
+            stats.minorFaults = p.getMinorFaults();
+            processes.put(stats.id, stats);
+
+            GroupStatistics group = groups.computeIfAbsent(p.getGroupId(), id -> new GroupStatistics());
+            group.groupId = p.getGroupId();
+            group.cpu += p.getCpuCycles();
+            group.meanTurnaround += stats.turnaround;
+            group.processes++;
+        }
+
+        this.instructions = totalCpu;
+
+        for(GroupStatistics group : groups.values()) {
+            group.cpuShare = totalCpu > 0 ? (double) group.cpu / totalCpu : 0;
+            group.meanTurnaround /= group.processes;
+        }
+    }
+
+    /**
+     * @return The processes, ordered by ID.
+     */
+    Iterable<ProcessStatistics> getProcesses() {
+        return processes.values();
+    }
+
+    /**
+     * @return The groups, ordered by ID.
+     */
+    Iterable<GroupStatistics> getGroups() {
+        return groups.values();
+    }
+
+    long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return The number of instructions executed by all processes.
+     */
+    long getInstructions() {
+        return instructions;
+    }
+
+    long getMajorFaults() {
+        return majorFaults;
+    }
+
+    long getMinorFaults() {
+        return minorFaults;
+    }
+
+    /**
+     * @return The number of resident pages reclaimed to make room for others.
+     */
+    long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The SplitMix64 generator of SplittableRandom, with its state open to a
+ * checkpoint.
+ *
+ * SplittableRandom keeps its seed and gamma private, so a run using it can
+ * never be resumed. This generator draws exactly the same numbers, and
+ * splits the same way, as a SplittableRandom created with the same seed.
+ */
+class SplitMixRandom implements RandomGenerator {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private long gamma;
+
+    SplitMixRandom() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMixRandom(long seed, long gamma) {
+        this.seed  = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return A new generator, independent of this one from then on.
+     */
+    SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putLong(seed);
+        out.putLong(gamma);
+    }
+
+    void readCheckpoint(Checkpoint.Reader in) throws IOException {
+        seed  = in.getLong();
+        gamma = in.getLong();
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+
+        // ensure enough bit transitions
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return n < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+
+/**
+ * Stride scheduling: every ready process has a pass value that grows by its
+ * stride, inversely proportional to its tickets, for every cycle it runs,
+ * and the process with the smallest pass runs next. Over any stretch of
+ * time each process gets the CPU in proportion to its tickets, and the
+ * next process is found in O(log n) from a heap of pass values.
+ *
+ * The running process is only charged when it leaves the CPU, so the heap
+ * is not touched while it runs. A process joining or waking up starts no
+ * lower than the smallest pass picked so far, so time spent blocked is not
+ * saved up to monopolize the CPU later.
+ */
+class StrideScheduler extends AbstractScheduler {
+    // stride of a process holding one ticket
+    private static final long STRIDE1 = 1 << 20;
+
+    /**
+     * Ready processes, ordered by pass value. Ties go to the smallest
+     * process ID.
+     */
+    private IndexedHeap<ScheduledProcess> ready;
+
+    // smallest pass value picked so far
+    private long minPass;
+
+    StrideScheduler() {
+        ready = new IndexedHeap<>(StrideScheduler::comparePasses);
+    }
+
+    @Override
+    public String getPolicy() {
+        return STRIDE;
+    }
+
+    @Override
+    protected void admit(ScheduledProcess p) {
+        p.setTickets(getTickets(p));
+    }
+
+    @Override
+    protected void enqueue(ScheduledProcess p) {
+        p.setPass(Math.max(p.getPass(), minPass));
+        ready.add(p);
+    }
+
+    @Override
+    protected boolean dequeue(ScheduledProcess p) {
+        if(!ready.contains(p)) return false;
+
+        ready.remove(p);
+        return true;
+    }
+
+    @Override
+    protected ScheduledProcess selectNext() {
+        ScheduledProcess p = ready.peek();
+        if(p != null) {
+            minPass = Math.max(minPass, p.getPass());
+        }
+
+        return p;
+    }
+
+    @Override
+    protected boolean isOutranked(ScheduledProcess p, long cycles) {
+        long pass = p.getPass() + STRIDE1 / p.getTickets() * cycles;
+
+        // the best of the others: the root, or the better of its children
+        ScheduledProcess best = ready.peek();
+        if(best == p) {
+            best = ready.size() > 2 && comparePasses(ready.get(2), ready.get(1)) < 0 ? ready.get(2) : ready.get(1);
+        }
+
+        int cmp = Long.compare(best.getPass(), pass);
+        return cmp != 0 ? cmp < 0 : best.getId() < p.getId();
+    }
+
+    /**
+     * A heap leaf, which is cheap to remove and tends to have one of the
+     * larger pass values.
+     */
+    @Override
+    protected ScheduledProcess selectVictim() {
+        return ready.get(ready.size() - 1);
+    }
+
+    @Override
+    protected void charge(ScheduledProcess p, long cycles) {
+        if(cycles <= 0) return;
+
+        p.setPass(p.getPass() + STRIDE1 / p.getTickets() * cycles);
+        ready.update(p);
+    }
+
+    @Override
+    protected void writePolicyCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putLong(minPass);
+    }
+
+    @Override
+    protected void readPolicyCheckpoint(Checkpoint.Reader in) throws IOException {
+        minPass = in.getLong();
+    }
+
+    private static int comparePasses(ScheduledProcess a, ScheduledProcess b) {
+        int cmp = Long.compare(a.getPass(), b.getPass());
+        return cmp != 0 ? cmp : Integer.compare(a.getId(), b.getId());
+    }
+}
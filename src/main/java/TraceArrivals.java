@@ -0,0 +1,167 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Processes arriving from a trace file while the simulation runs.
+ *
+ * Each line of the trace describes one process:
+ *
+ *      arrival program group [weight [priority]]
+ *
+ * where arrival is the clock cycle the process arrives on, in
+ * non-decreasing order, and weight and priority default to the group's.
+ * Blank lines and lines starting with # are skipped.
+ *
+ * The trace is read one line ahead of the simulation, so only the next
+ * arrival is held in memory however long the trace is. Any CPU may admit
+ * arrivals, so the methods are synchronized.
+ */
+class TraceArrivals {
+    private File file;
+    private BufferedReader in;
+    private Simulation simulation;
+    private SchedulerProcessConfiguration config;
+    private int lineNumber;
+
+    // the next arrival, read ahead
+    private long nextArrival;
+    private String program;
+    private int groupId;
+    private double weight;
+    private int priority;
+
+    /**
+     * @param file       The trace file.
+     * @param simulation The simulation creating the processes.
+     * @param config     The simulation configuration.
+     */
+    TraceArrivals(File file, Simulation simulation, SchedulerProcessConfiguration config) throws IOException {
+        this.file       = file;
+        this.in         = new BufferedReader(new FileReader(file));
+        this.simulation = simulation;
+        this.config     = config;
+        this.lineNumber = 0;
+        this.nextArrival = 0;
+
+        readNext();
+    }
+
+    /**
+     * @return The clock cycle of the next arrival, or Long.MAX_VALUE if the
+     * trace has ended.
+     */
+    synchronized long getNextArrival() {
+        return nextArrival;
+    }
+
+    synchronized boolean isExhausted() {
+        return nextArrival == Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates the next process if it has arrived. Programs that fail to
+     * load are skipped.
+     *
+     * @param clock The current clock cycle.
+     * @return The process, or null if the next one has not arrived yet.
+     */
+    synchronized ScheduledProcess poll(long clock) {
+        while(nextArrival <= clock) {
+            long arrival = nextArrival;
+            ScheduledProcess process = simulation.createProcess(program, groupId, weight, priority);
+            readNext();
+
+            if(process != null) {
+                process.setArrivalCycle(arrival);
+                return process;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes the position in the trace and the arrival read ahead. Must
+     * not be called once the trace has ended.
+     */
+    synchronized void writeCheckpoint(Checkpoint.Writer out) throws IOException {
+        out.putString(file.getAbsolutePath());
+        out.putInt(lineNumber);
+        out.putLong(nextArrival);
+        out.putString(program);
+        out.putInt(groupId);
+        out.putDouble(weight);
+        out.putInt(priority);
+    }
+
+    /**
+     * Reopens a trace at the position written by writeCheckpoint.
+     */
+    static TraceArrivals readCheckpoint(Checkpoint.Reader in, Simulation simulation,
+                                        SchedulerProcessConfiguration config) throws IOException {
+        TraceArrivals arrivals = new TraceArrivals(new File(in.getString()), simulation, config);
+
+        int lineNumber = in.getInt();
+        while(arrivals.lineNumber < lineNumber) {
+            if(arrivals.in.readLine() == null) {
+                throw new IOException(arrivals.file + " is shorter than when the checkpoint was taken.");
+            }
+            arrivals.lineNumber++;
+        }
+
+        arrivals.nextArrival = in.getLong();
+        arrivals.program     = in.getString();
+        arrivals.groupId     = in.getInt();
+        arrivals.weight      = in.getDouble();
+        arrivals.priority    = in.getInt();
+        return arrivals;
+    }
+
+    private void readNext() {
+        try {
+            String line;
+            while((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if(line.isEmpty() || line.startsWith("#")) continue;
+
+                parse(line);
+                return;
+            }
+
+            in.close();
+            nextArrival = Long.MAX_VALUE;
+        } catch(IOException e) {
+            throw new UncheckedIOException("Error reading trace " + file, e);
+        }
+    }
+
+    private void parse(String line) {
+        String[] parts = line.split("\\s+");
+
+        if(parts.length < 3 || parts.length > 5) {
+            throw new IllegalArgumentException("Invalid trace line " + lineNumber + " \"" + line + "\". Expected " +
+                    "{arrival} {program} {group} [{weight} [{priority}]].");
+        }
+
+        long arrival = Long.parseLong(parts[0]);
+        if(arrival < 0) {
+            throw new IllegalArgumentException("Invalid trace line " + lineNumber + " \"" + line + "\". Arrivals " +
+                    "cannot be negative.");
+        }
+        if(arrival < nextArrival) {
+            throw new IllegalArgumentException("Invalid trace line " + lineNumber + " \"" + line + "\". Arrivals must " +
+                    "be in order.");
+        }
+
+        nextArrival = arrival;
+        program     = parts[1];
+        groupId     = Integer.parseInt(parts[2]);
+        weight      = parts.length > 3 ? Double.parseDouble(parts[3]) : config.getProcessWeight(groupId);
+        priority    = parts.length > 4 ? Integer.parseInt(parts[4]) : config.getProcessPriority(groupId);
+    }
+}
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsmTest {
+    private static final String MIX = String.join("\n",
+            "; mixed Compute and I/O",
+            "",
+            "\tC",
+            "L2\tI",
+            "L1\tC",
+            "\tC",
+            "\tC",
+            "\tC",
+            "\tB 99 L1",
+            "\tB 75 L2",
+            "\tX");
+
+    private static final int[] MIX_CODE = { 1, 2, 1, 1, 1, 1, 227, 0, 2, 203, 0, 1, 3 };
+
+    @TempDir
+    Path dir;
+
+    private static int[] assemble(String source) throws IOException {
+        return Asm.assemble("test.pasm", new BufferedReader(new StringReader(source)));
+    }
+
+    @Test
+    void assemblesLabelsAndBranches() throws IOException {
+        assertArrayEquals(MIX_CODE, assemble(MIX));
+    }
+
+    @Test
+    void errorsThrowInsteadOfExiting() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> assemble("\tB 50 L9\n\tX"));
+        assertEquals("test.pasm: cannot find the branch destination L9", e.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> assemble("L1\tB 101 L1"));
+        assertThrows(IllegalArgumentException.class, () -> assemble("L1\tB often L1"));
+        assertThrows(IllegalArgumentException.class, () -> assemble("L1\tB L1"));
+    }
+
+    @Test
+    void writesTheBinaryFormat() throws IOException {
+        Path source = dir.resolve("Mix.pasm");
+        Files.write(source, MIX.getBytes());
+
+        assertTrue(Asm.assembleFile(source, true, null));
+
+        ProgramImage image = ProgramImage.load(dir.resolve("Mix.pexe").toFile());
+        assertArrayEquals(MIX_CODE, image.getCode());
+        assertEquals(0, image.getEntry());
+    }
+
+    @Test
+    void unchangedSourcesAreSkipped() throws IOException {
+        Path source = dir.resolve("Mix.pasm");
+        Files.write(source, MIX.getBytes());
+        Path cacheFile = dir.resolve(".asmcache");
+
+        AssemblyCache cache = new AssemblyCache(cacheFile);
+        assertTrue(Asm.assembleFile(source, true, cache));
+        assertFalse(Asm.assembleFile(source, true, cache));
+        cache.save();
+
+        // the cache outlives the run, but not a change of format or source
+        cache = new AssemblyCache(cacheFile);
+        assertFalse(Asm.assembleFile(source, true, cache));
+        assertTrue(Asm.assembleFile(source, false, cache));
+
+        Files.write(source, (MIX + "\n\tC").getBytes());
+        assertTrue(Asm.assembleFile(source, false, cache));
+        assertFalse(Asm.assembleFile(source, false, cache));
+
+        // nor a program removed since
+        Files.delete(dir.resolve("Mix.pexe"));
+        assertTrue(Asm.assembleFile(source, false, cache));
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchRunnerTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void summaryOfOneValueHasNoInterval() {
+        BatchRunner.Summary summary = new BatchRunner.Summary();
+        summary.add(3.5);
+
+        assertEquals(3.5, summary.getMean());
+        assertEquals(0, summary.getConfidence());
+    }
+
+    @Test
+    void summaryMeanAndConfidence() {
+        BatchRunner.Summary summary = new BatchRunner.Summary();
+        for(double value : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 }) {
+            summary.add(value);
+        }
+
+        // sample variance 32/7, t = 2.365 for 7 degrees of freedom
+        assertEquals(5, summary.getMean(), 1e-12);
+        assertEquals(2.365 * Math.sqrt(32.0 / 7 / 8), summary.getConfidence(), 1e-12);
+    }
+
+    @Test
+    void manyValuesUseTheNormalQuantile() {
+        BatchRunner.Summary summary = new BatchRunner.Summary();
+        for(int i = 0; i < 100; i++) {
+            summary.add(i % 2);
+        }
+
+        assertEquals(0.5, summary.getMean(), 1e-12);
+        assertEquals(1.960 * Math.sqrt(25.0 / 99 / 100), summary.getConfidence(), 1e-12);
+    }
+
+    /**
+     * The replications run on a thread pool in any order, but the same seed
+     * always prints the same results.
+     */
+    @Test
+    void theSameSeedPrintsTheSameResults() throws IOException, InterruptedException, ExecutionException {
+        SchedulerProcessConfiguration config = new SchedulerProcessConfiguration();
+        config.setDefaultProcessWeight(0.5);
+        config.setDefaultProcessPriority(60);
+        config.setReplications(6);
+        config.setFiles(files(
+                program("a.txt", "1 1 150 0 0 2 1 180 0 5 2 1 3"),
+                program("b.txt", "1 2 1 1 140 0 0 1 2 3")));
+
+        String first = run(config, 9);
+        assertEquals(first, run(config, 9));
+        assertTrue(first.startsWith("Replications: 6, cycles: "), first);
+        assertTrue(first.contains(String.format("%-8d %-6d ", 1, 2)), first);
+    }
+
+    private String program(String name, String code) throws IOException {
+        File file = new File(dir, name);
+        String[] words = code.split(" ");
+        Files.write(file.toPath(), (words.length + "\n" + String.join("\n", words) + "\n").getBytes());
+        return file.getPath();
+    }
+
+    private static List<SchedulerProcessConfiguration.ProcessFile> files(String... paths) {
+        List<SchedulerProcessConfiguration.ProcessFile> files = new ArrayList<>();
+        for(int i = 0; i < paths.length; i++) {
+            SchedulerProcessConfiguration.ProcessFile file = new SchedulerProcessConfiguration.ProcessFile();
+            file.file    = paths[i];
+            file.groupId = i + 1;
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    private static String run(SchedulerProcessConfiguration config, long seed)
+            throws InterruptedException, ExecutionException {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        System.setOut(new PrintStream(out, true));
+        try {
+            new BatchRunner(config).run(new SplitMixRandom(seed));
+        } finally {
+            System.setOut(stdout);
+        }
+
+        return out.toString();
+    }
+}
@@ -0,0 +1,166 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void valuesRoundTripAcrossTheBuffer() throws IOException {
+        File file = new File(dir, "values.ck");
+        int[] large = new int[40000];
+        for(int i = 0; i < large.length; i++) {
+            large[i] = i * 31;
+        }
+
+        try(Checkpoint.Writer out = new Checkpoint.Writer(file)) {
+            out.putInt(-7);
+            out.putLong(Long.MIN_VALUE);
+            out.putDouble(0.125);
+            out.putBoolean(true);
+            out.putBoolean(false);
+            out.putString("");
+            out.putString("ünïcode ✓");
+            out.putInts(null);
+            out.putInts(large);
+            out.putLong(42);
+            out.finish();
+        }
+
+        try(Checkpoint.Reader in = new Checkpoint.Reader(file)) {
+            assertEquals(-7, in.getInt());
+            assertEquals(Long.MIN_VALUE, in.getLong());
+            assertEquals(0.125, in.getDouble());
+            assertTrue(in.getBoolean());
+            assertFalse(in.getBoolean());
+            assertEquals("", in.getString());
+            assertEquals("ünïcode ✓", in.getString());
+            assertNull(in.getInts());
+            assertArrayEquals(large, in.getInts());
+            assertEquals(42, in.getLong());
+        }
+    }
+
+    @Test
+    void anUnfinishedCheckpointLeavesTheEarlierOne() throws IOException {
+        File file = new File(dir, "keep.ck");
+        try(Checkpoint.Writer out = new Checkpoint.Writer(file)) {
+            out.putInt(1);
+            out.finish();
+        }
+
+        try(Checkpoint.Writer out = new Checkpoint.Writer(file)) {
+            out.putInt(2);
+        }
+
+        assertFalse(new File(dir, "keep.ck.tmp").exists());
+        try(Checkpoint.Reader in = new Checkpoint.Reader(file)) {
+            assertEquals(1, in.getInt());
+        }
+    }
+
+    @Test
+    void rejectsAFileThatIsNotACheckpoint() throws IOException {
+        File file = new File(dir, "other.ck");
+        Files.write(file.toPath(), "not a checkpoint".getBytes());
+
+        IOException e = assertThrows(IOException.class, () -> new Checkpoint.Reader(file));
+        assertEquals(file + " is not a checkpoint.", e.getMessage());
+
+        Files.write(file.toPath(), new byte[3]);
+        assertThrows(IOException.class, () -> new Checkpoint.Reader(file));
+    }
+
+    @Test
+    void rejectsAnotherVersion() throws IOException {
+        File file = new File(dir, "old.ck");
+        Files.write(file.toPath(), ByteBuffer.allocate(8).putInt(Checkpoint.MAGIC).putInt(Checkpoint.VERSION - 1)
+                .array());
+
+        IOException e = assertThrows(IOException.class, () -> new Checkpoint.Reader(file));
+        assertTrue(e.getMessage().contains("version " + (Checkpoint.VERSION - 1)), e.getMessage());
+    }
+
+    @Test
+    void rejectsATruncatedCheckpoint() throws IOException {
+        File file = new File(dir, "short.ck");
+        try(Checkpoint.Writer out = new Checkpoint.Writer(file)) {
+            out.putInt(1);
+            out.finish();
+        }
+
+        try(Checkpoint.Reader in = new Checkpoint.Reader(file)) {
+            assertEquals(1, in.getInt());
+            IOException e = assertThrows(IOException.class, in::getLong);
+            assertEquals(file + " ends in the middle of the checkpoint.", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the program images and paged memory, reads them back into
+     * empty ones and writes them again, as a restored simulation would.
+     */
+    @Test
+    void imagesAndMemoryRoundTrip() throws IOException {
+        File program = new File(dir, "p.pexe");
+        int[] code = new int[4 * PagedMemory.PAGE_SIZE - 10];
+        Arrays.fill(code, 1);
+        try(OutputStream out = new FileOutputStream(program)) {
+            ProgramImage.writeBinary(out, code, 0);
+        }
+
+        ProgramCache images = new ProgramCache();
+        PagedMemory memory = new PagedMemory(2 * PagedMemory.PAGE_SIZE);
+        ScheduledProcess process = new ScheduledProcess(0, 1, 0, code.length, 0.5, 60);
+        process.setImage(images.load(program));
+
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(process, 0));
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(process, 1));
+        assertEquals(PagedMemory.HIT, memory.touch(process, 1));
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(process, 3));
+        assertEquals(1, memory.getEvictions());
+
+        File first = new File(dir, "first.ck");
+        try(Checkpoint.Writer out = new Checkpoint.Writer(first)) {
+            images.writeCheckpoint(out);
+            memory.writeCheckpoint(out);
+            out.finish();
+        }
+
+        ProgramCache restoredImages = new ProgramCache();
+        PagedMemory restoredMemory = new PagedMemory(PagedMemory.PAGE_SIZE);
+        try(Checkpoint.Reader in = new Checkpoint.Reader(first)) {
+            restoredImages.readCheckpoint(in);
+            restoredMemory.readCheckpoint(in, restoredImages.getImages());
+        }
+
+        File second = new File(dir, "second.ck");
+        try(Checkpoint.Writer out = new Checkpoint.Writer(second)) {
+            restoredImages.writeCheckpoint(out);
+            restoredMemory.writeCheckpoint(out);
+            out.finish();
+        }
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+        assertEquals(2, restoredMemory.getFrameCount());
+        assertEquals(3, restoredMemory.getMajorFaults());
+        assertEquals(1, restoredMemory.getEvictions());
+
+        // the pages resident before the checkpoint are resident after it
+        ScheduledProcess restored = new ScheduledProcess(1, 1, 0, code.length, 0.5, 60);
+        restored.setImage(restoredImages.load(program));
+        assertEquals(PagedMemory.MINOR_FAULT, restoredMemory.touch(restored, 1));
+        assertEquals(PagedMemory.MINOR_FAULT, restoredMemory.touch(restored, 3));
+        assertEquals(PagedMemory.MAJOR_FAULT, restoredMemory.touch(restored, 0));
+    }
+}
@@ -0,0 +1,193 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CpuClusterTest {
+    /**
+     * Computes, blocks on I/O now and then, and exits.
+     */
+    private static DecodedProgram program(int length) {
+        int[] code = new int[length];
+        Arrays.fill(code, 1);
+        for(int addr = 7; addr < length - 1; addr += 11) {
+            code[addr] = 2;
+        }
+        code[length - 1] = 3;
+
+        return new DecodedProgram(code, 0, length);
+    }
+
+    private static CpuCluster cluster(int cpus, int processes, boolean eventDriven) {
+        return cluster(cpus, processes, eventDriven, Scheduler.FAIR_SHARE);
+    }
+
+    private static CpuCluster cluster(int cpus, int processes, boolean eventDriven, String policy) {
+        SchedulerProcessConfiguration config = new SchedulerProcessConfiguration();
+        config.setSchedulerPolicy(policy);
+        config.setCpus(cpus);
+        config.setEventDriven(eventDriven);
+
+        CpuCluster cluster = new CpuCluster(cpus, config, new PagedMemory(65536), new SchedulerMetrics(cpus, config),
+                new SplitMixRandom(5), null);
+        for(int id = 0; id < processes; id++) {
+            // uneven lengths, so some CPUs run dry and steal from the others
+            DecodedProgram program = program(20 + 40 * (id % 4));
+            ScheduledProcess p = new ScheduledProcess(id, id % 3, 0, program.size(), 0.5, 60);
+            p.setProgram(program);
+            cluster.addProcess(p);
+        }
+
+        return cluster;
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void oneCpuRunsEveryProcessToTheEnd() throws InterruptedException {
+        CpuCluster cluster = cluster(1, 12, false);
+        assertTrue(cluster.hasProcesses());
+
+        cluster.run();
+        assertFalse(cluster.hasProcesses());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void severalCpusRunEveryProcessToTheEnd() throws InterruptedException {
+        CpuCluster cluster = cluster(4, 40, false);
+
+        cluster.run();
+        assertFalse(cluster.hasProcesses());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { Scheduler.STRIDE, Scheduler.LOTTERY, Scheduler.MLFQ })
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void everyPolicyRunsEveryProcessToTheEnd(String policy) throws InterruptedException {
+        CpuCluster cluster = cluster(3, 30, false, policy);
+
+        cluster.run();
+        assertFalse(cluster.hasProcesses());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void idleCpusSkipAheadWithoutLosingProcesses() throws InterruptedException {
+        CpuCluster cluster = cluster(3, 7, true);
+
+        cluster.run();
+        assertFalse(cluster.hasProcesses());
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void processesSubmittedWhileRunningAllRun() throws InterruptedException {
+        CpuCluster cluster = cluster(3, 0, false);
+        cluster.openSubmissions();
+
+        Thread cpus = new Thread(() -> {
+            try {
+                cluster.run();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        cpus.start();
+
+        for(int id = 0; id < 60; id++) {
+            DecodedProgram program = program(15 + id % 30);
+            ScheduledProcess p = new ScheduledProcess(id, id % 2, 0, program.size(), 0.5, 60);
+            p.setProgram(program);
+            cluster.submitProcess(p);
+        }
+        cluster.closeSubmissions();
+
+        cpus.join();
+        assertFalse(cluster.hasProcesses());
+    }
+
+    @Test
+    void aSubmissionAfterSubmissionsCloseIsRefused() {
+        CpuCluster cluster = cluster(2, 0, false);
+        ScheduledProcess p = new ScheduledProcess(0, 1, 0, 1, 0.5, 60);
+        assertThrows(IllegalStateException.class, () -> cluster.submitProcess(p));
+
+        cluster.openSubmissions();
+        cluster.closeSubmissions();
+        assertThrows(IllegalStateException.class, () -> cluster.submitProcess(p));
+        assertFalse(cluster.hasProcesses());
+    }
+
+    /**
+     * Two processes of one group and eight of another, all computing for as
+     * long, on two CPUs. Sharing the CPUs out by group, the first group's
+     * processes are done about when the second group has had as many
+     * cycles, long before the second group is done. With the clocks kept
+     * close, they are done at about the same cycle on either CPU.
+     */
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void groupSharesHoldAcrossCpus() throws InterruptedException {
+        final int length = 20000;
+        CpuCluster cluster = cluster(2, 0, false);
+
+        int[] code = new int[length];
+        Arrays.fill(code, 1);
+        code[length - 1] = 3;
+        DecodedProgram program = new DecodedProgram(code, 0, length);
+
+        List<ScheduledProcess> processes = new ArrayList<>();
+        for(int id = 0; id < 10; id++) {
+            ScheduledProcess p = new ScheduledProcess(id, id < 2 ? 1 : 2, 0, length, 0.5, 60);
+            p.setProgram(program);
+            cluster.addProcess(p);
+            processes.add(p);
+        }
+
+        cluster.run();
+
+        // in turn, the first group would only be done at the very end
+        for(ScheduledProcess p : processes.subList(0, 2)) {
+            assertTrue(p.getExitCycle() < 3L * length, "process " + p.getId() + " exited at " + p.getExitCycle());
+        }
+        for(ScheduledProcess p : processes.subList(2, 10)) {
+            assertTrue(p.getExitCycle() >= 4L * length, "process " + p.getId() + " exited at " + p.getExitCycle());
+        }
+        assertEquals(processes.get(0).getExitCycle(), processes.get(1).getExitCycle(), length / 10);
+    }
+
+    /**
+     * Submissions left open would keep every CPU waiting, but a failure on
+     * any one stops them all and is thrown from run.
+     */
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void aFailureStopsEveryCpu() throws InterruptedException {
+        CpuCluster cluster = cluster(3, 9, false);
+        cluster.openSubmissions();
+        IllegalArgumentException failure = new IllegalArgumentException("bad trace line");
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread cpus = new Thread(() -> {
+            try {
+                cluster.run();
+            } catch(Throwable e) {
+                thrown.set(e);
+            }
+        });
+        cpus.start();
+        cluster.fail(failure);
+
+        cpus.join();
+        assertSame(failure, thrown.get());
+        assertFalse(cluster.hasProcesses());
+    }
+}
@@ -0,0 +1,197 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs programs on a single CPU and checks what it logs.
+ */
+class CpuTest {
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private SchedulerProcessConfiguration config = new SchedulerProcessConfiguration();
+    private EventLog log;
+    private SchedulerMetrics metrics;
+    private CpuCluster cluster;
+
+    private void start(long seed) {
+        start(seed, false);
+    }
+
+    private void start(long seed, boolean processThreads) {
+        config.setProcessThreads(processThreads);
+        log = new EventLog(out, EventLog.FORMAT_TEXT, EventLog.VERBOSITY_ALL);
+        metrics = new SchedulerMetrics(1, config);
+        cluster = new CpuCluster(1, config, new PagedMemory(65536), metrics, new SplitMixRandom(seed), log);
+    }
+
+    private ScheduledProcess add(int id, int... code) {
+        ScheduledProcess p = new ScheduledProcess(id, 1, 0, code.length, 0.5, 60);
+        p.setProgram(new DecodedProgram(code, 0, code.length));
+        cluster.addProcess(p);
+        return p;
+    }
+
+    private List<String> run() throws InterruptedException, IOException {
+        log.start();
+        cluster.run();
+        log.close();
+        assertFalse(cluster.hasProcesses());
+        return Arrays.asList(out.toString().split(System.lineSeparator()));
+    }
+
+    private static int[] repeat(int opcode, int count, int last) {
+        int[] code = new int[count + 1];
+        Arrays.fill(code, opcode);
+        code[count] = last;
+        return code;
+    }
+
+    @Test
+    void runsAProgramToItsExit() throws InterruptedException, IOException {
+        start(1);
+        add(0, 1, 1, 1, 3);
+
+        assertEquals(List.of("Process loaded: 0", "Process 0 exiting"), run());
+        assertEquals(4, cluster.getClock());
+    }
+
+    @Test
+    void illegalOpcodeEndsTheProcess() throws InterruptedException, IOException {
+        start(1);
+        add(0, 1, 77, 3);
+
+        assertEquals(List.of("Process loaded: 0", "Illegal opcode: 77", "Process 0 exiting"), run());
+    }
+
+    @Test
+    void branchOperandsPastTheEndAreIllegal() throws InterruptedException, IOException {
+        start(1);
+        add(0, 1, 128);
+
+        assertEquals(List.of("Process loaded: 0", "Illegal address 2", "Process 0 exiting"), run());
+    }
+
+    @Test
+    void aBranchTakenEveryTimeJumps() throws InterruptedException, IOException {
+        start(1);
+        add(0, 228, 0, 9);
+
+        assertEquals(List.of("Process loaded: 0", "Illegal address 9", "Process 0 exiting"), run());
+    }
+
+    @Test
+    void aBranchNeverTakenFallsThrough() throws InterruptedException, IOException {
+        start(1);
+        add(0, 128, 0, 9, 3);
+
+        assertEquals(List.of("Process loaded: 0", "Process 0 exiting"), run());
+    }
+
+    @Test
+    void aBlockedProcessWaitsForItsIo() throws InterruptedException, IOException {
+        start(1);
+        add(0, 2, 3);
+
+        List<String> log = run();
+        assertEquals("Process loaded: 0", log.get(0));
+        assertTrue(log.get(1).matches("Process 0 blocked for \\d+ cycles\\."), log.get(1));
+        assertEquals("Waiting for processes to unblock.", log.get(2));
+        assertEquals("Process 0 exiting", log.get(log.size() - 1));
+
+        int delay = Integer.parseInt(log.get(1).split(" ")[4]);
+        assertTrue(delay >= Sim.CLOCK_IO_MIN, log.get(1));
+        assertTrue(cluster.getClock() > delay);
+    }
+
+    @Test
+    void processesTakeTurnsAtTheTimer() throws InterruptedException, IOException {
+        start(1);
+        add(0, repeat(1, 250, 3));
+        add(1, repeat(1, 250, 3));
+
+        assertEquals(List.of(
+                "Process loaded: 0",
+                "Process loaded: 1",
+                "Process loaded: 0",
+                "Process loaded: 1",
+                "Process loaded: 0",
+                "Process 0 exiting",
+                "Process loaded: 1",
+                "Process loaded: 1",
+                "Process 1 exiting"), run());
+        assertEquals(502, cluster.getClock());
+        assertArrayEquals(new String[] { "group 1: 1.0000 of the CPU, target 1.0000" }, metrics.getGroupShares());
+    }
+
+    @Test
+    void theQuantumIsConfigurable() throws InterruptedException, IOException {
+        config.setQuantum(40);
+        start(1);
+        add(0, repeat(1, 70, 3));
+        add(1, repeat(1, 70, 3));
+
+        assertEquals(List.of(
+                "Process loaded: 0",
+                "Process loaded: 1",
+                "Process loaded: 0",
+                "Process 0 exiting",
+                "Process loaded: 1",
+                "Process loaded: 1",
+                "Process 1 exiting"), run());
+        assertEquals(142, cluster.getClock());
+    }
+
+    /**
+     * Tick-less, a timer interrupt only switches processes if another would
+     * be picked, so the last process is not loaded again and again.
+     */
+    @Test
+    void theTickLessTimerKeepsTheProcessRunning() throws InterruptedException, IOException {
+        config.setTickless(true);
+        start(1);
+        add(0, repeat(1, 250, 3));
+        add(1, repeat(1, 250, 3));
+
+        assertEquals(List.of(
+                "Process loaded: 0",
+                "Process loaded: 1",
+                "Process loaded: 0",
+                "Process loaded: 1",
+                "Process loaded: 0",
+                "Process 0 exiting",
+                "Process loaded: 1",
+                "Process 1 exiting"), run());
+        assertEquals(502, cluster.getClock());
+    }
+
+    @Test
+    void theSameSeedRunsTheSame() throws InterruptedException, IOException {
+        assertEquals(mixedRun(false), mixedRun(false));
+    }
+
+    /**
+     * A thread per process hands the CPU from thread to thread, but runs
+     * the same schedule as the CPU stepping through the processes itself.
+     */
+    @Test
+    void aThreadPerProcessRunsTheSameSchedule() throws InterruptedException, IOException {
+        assumeTrue(ProcessThread.isSupported(), "virtual threads need Java 21");
+
+        assertEquals(mixedRun(false), mixedRun(true));
+    }
+
+    private String mixedRun(boolean processThreads) throws InterruptedException, IOException {
+        out.reset();
+        start(42, processThreads);
+        for(int id = 0; id < 5; id++) {
+            add(id, 1, 150, 0, 0, 2, 1, 180, 0, 4, 2, 3);
+        }
+        run();
+        return out.toString();
+    }
+}
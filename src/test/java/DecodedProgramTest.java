@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class DecodedProgramTest {
+    @Test
+    void decodesEveryAddress() {
+        // comp, block, branch 40% to 0x0102, exit, then an unknown opcode
+        int[] memory = { 9, 9, 1, 2, 168, 1, 2, 3, 77 };
+        DecodedProgram program = new DecodedProgram(memory, 2, 7);
+        int[] code = program.getCode();
+
+        assertEquals(7, program.size());
+        assertEquals(DecodedProgram.COMP, code[0]);
+        assertEquals(DecodedProgram.BLOCK, code[1]);
+        assertEquals(DecodedProgram.BRANCH, code[2] & DecodedProgram.KIND_MASK);
+        assertEquals(40, DecodedProgram.branchPercentage(code[2]));
+        assertEquals(0x0102, program.getDestinations()[2]);
+        assertEquals(DecodedProgram.EXIT, code[5]);
+        assertEquals(DecodedProgram.BAD_OPCODE, code[6]);
+
+        // operand bytes decode as instructions of their own
+        assertEquals(DecodedProgram.COMP, code[3]);
+        assertEquals(168, program.readByte(2));
+    }
+
+    @Test
+    void branchesRunningPastTheEndHaveBadOperands() {
+        DecodedProgram program = new DecodedProgram(new int[] { 1, 128, 0 }, 0, 3);
+        assertEquals(DecodedProgram.BAD_OPERAND, program.getCode()[1]);
+        assertEquals(3, program.badOperandAddress(1));
+
+        program = new DecodedProgram(new int[] { 1, 228 }, 0, 2);
+        assertEquals(DecodedProgram.BAD_OPERAND, program.getCode()[1]);
+        assertEquals(2, program.badOperandAddress(1));
+    }
+
+    @Test
+    void opcodesPastTheBranchRangeAreIllegal() {
+        DecodedProgram program = new DecodedProgram(new int[] { 229, 0, 0, 127, 0 }, 0, 5);
+
+        assertEquals(DecodedProgram.BAD_OPCODE, program.getCode()[0]);
+        assertEquals(DecodedProgram.BAD_OPCODE, program.getCode()[3]);
+        assertEquals(DecodedProgram.BAD_OPCODE, program.getCode()[4]);
+    }
+}
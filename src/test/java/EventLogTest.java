@@ -0,0 +1,175 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EventLogTest {
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private List<String> lines() {
+        return List.of(out.toString().split(System.lineSeparator()));
+    }
+
+    @Test
+    void textFormat() throws InterruptedException, IOException {
+        EventLog log = new EventLog(out, EventLog.FORMAT_TEXT, EventLog.VERBOSITY_ALL);
+        EventLog.Ring ring = log.newRing(0);
+        log.start();
+
+        ring.log(EventLog.PROCESS_LOADED, 1, 4, 0);
+        ring.log(EventLog.PROCESS_BLOCKED, 2, 4, 75);
+        ring.log(EventLog.WAITING, 3, -1, 0);
+        ring.log(EventLog.ILLEGAL_ADDRESS, 4, -1, 900);
+        ring.log(EventLog.ILLEGAL_OPCODE, 5, -1, 77);
+        ring.log(EventLog.PROCESS_EXITED, 6, 4, 0);
+        log.close();
+
+        assertEquals(List.of(
+                "Process loaded: 4",
+                "Process 4 blocked for 75 cycles.",
+                "Waiting for processes to unblock.",
+                "Illegal address 900",
+                "Illegal opcode: 77",
+                "Process 4 exiting"), lines());
+    }
+
+    @Test
+    void severalCpusAreToldApart() throws InterruptedException, IOException {
+        EventLog log = new EventLog(out, EventLog.FORMAT_TEXT, EventLog.VERBOSITY_ALL);
+        log.newRing(0);
+        EventLog.Ring ring = log.newRing(1);
+        log.start();
+
+        ring.log(EventLog.PROCESS_LOADED, 1, 4, 0);
+        log.close();
+
+        assertEquals(List.of("CPU 1: Process loaded: 4"), lines());
+    }
+
+    @Test
+    void csvFormat() throws InterruptedException, IOException {
+        EventLog log = new EventLog(out, EventLog.FORMAT_CSV, EventLog.VERBOSITY_ALL);
+        EventLog.Ring ring = log.newRing(2);
+        log.start();
+
+        ring.log(EventLog.PROCESS_BLOCKED, 17, 3, 60);
+        ring.log(EventLog.PROCESS_EXITED, 90, 3, 0);
+        log.close();
+
+        assertEquals(List.of(
+                "cycle,cpu,event,process,value",
+                "17,2,blocked,3,60",
+                "90,2,exited,3,0"), lines());
+    }
+
+    @Test
+    void binaryFormat() throws InterruptedException, IOException {
+        EventLog log = new EventLog(out, EventLog.FORMAT_BINARY, EventLog.VERBOSITY_ALL);
+        EventLog.Ring ring = log.newRing(1);
+        log.start();
+
+        ring.log(EventLog.ILLEGAL_OPCODE, 1L << 40, 8, 200);
+        log.close();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(EventLog.ILLEGAL_OPCODE, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(1L << 40, in.readLong());
+        assertEquals(8, in.readInt());
+        assertEquals(200, in.readInt());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void verbosityLeavesOutTheLesserEvents() throws InterruptedException, IOException {
+        EventLog log = new EventLog(out, EventLog.FORMAT_CSV, EventLog.VERBOSITY_EXITS);
+        EventLog.Ring ring = log.newRing(0);
+        log.start();
+
+        ring.log(EventLog.PROCESS_LOADED, 1, 1, 0);
+        ring.log(EventLog.WAITING, 2, -1, 0);
+        ring.log(EventLog.ILLEGAL_OPCODE, 3, -1, 9);
+        ring.log(EventLog.PROCESS_EXITED, 3, 1, 0);
+        log.close();
+
+        assertEquals(List.of(
+                "cycle,cpu,event,process,value",
+                "3,0,illegal_opcode,-1,9",
+                "3,0,exited,1,0"), lines());
+    }
+
+    /**
+     * Logs many rings' worth from several threads at once, so the producers
+     * have to wait for the writer, and checks nothing is lost or reordered.
+     */
+    @Test
+    void everyRecordIsWrittenInOrder() throws InterruptedException, IOException {
+        int cpus = 3;
+        int records = 100_000;
+
+        EventLog log = new EventLog(out, EventLog.FORMAT_CSV, EventLog.VERBOSITY_ALL);
+        Thread[] producers = new Thread[cpus];
+        for(int cpu = 0; cpu < cpus; cpu++) {
+            EventLog.Ring ring = log.newRing(cpu);
+            producers[cpu] = new Thread(() -> {
+                for(int i = 0; i < records; i++) {
+                    ring.log(EventLog.PROCESS_LOADED, i, i % 1000, 0);
+                }
+            });
+        }
+
+        log.start();
+        for(Thread producer : producers) {
+            producer.start();
+        }
+        for(Thread producer : producers) {
+            producer.join();
+        }
+        log.close();
+
+        long[] next = new long[cpus];
+        List<String> lines = lines();
+        for(String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            int cpu = Integer.parseInt(fields[1]);
+            assertEquals(next[cpu]++, Long.parseLong(fields[0]), line);
+        }
+        for(long count : next) {
+            assertEquals(records, count);
+        }
+    }
+
+    /**
+     * Once the output fails, a CPU logging many rings' worth drops what it
+     * cannot write instead of waiting for the writer forever.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { EventLog.FORMAT_TEXT, EventLog.FORMAT_BINARY })
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void aWriteFailureIsThrownFromClose(String format) throws InterruptedException {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        EventLog log = new EventLog(broken, format, EventLog.VERBOSITY_ALL);
+        EventLog.Ring ring = log.newRing(0);
+        log.start();
+
+        for(int i = 0; i < 100_000; i++) {
+            ring.log(EventLog.PROCESS_LOADED, i, i % 1000, 0);
+        }
+        assertThrows(IOException.class, log::close);
+    }
+}
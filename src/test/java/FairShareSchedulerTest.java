@@ -0,0 +1,407 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+class FairShareSchedulerTest {
+    private FairShareScheduler scheduler = new FairShareScheduler();
+
+    // every process added and not removed, by ID
+    private List<ScheduledProcess> processes = new ArrayList<>();
+
+    // utilization of each process and group, as the scheduler used to count
+    // it, and each process's priority before it ran
+    private Map<Integer, Integer> processUtilization = new HashMap<>();
+    private Map<Integer, Integer> groupUtilization = new HashMap<>();
+    private Map<Integer, Integer> initialPriority = new HashMap<>();
+
+    // utilization is halved eagerly every decayInterval cycles, if not 0
+    private int decayInterval;
+    private long clock;
+
+    // shares of the groups not given the default
+    private Map<Integer, Double> groupShares = new HashMap<>();
+
+    // paths to groups 0 to 4 at the top, and to groups 0 to 7 nested as
+    // 0/6, 1/2, 1/3/4/5 and 7
+    private static final int[][] FLAT = { {}, {}, {}, {}, {} };
+    private static final int[][] NESTED = { {}, {}, { 1 }, { 1 }, { 1, 3 }, { 1, 3, 4 }, { 0 }, {} };
+
+    private void add(ScheduledProcess p) {
+        scheduler.addProcess(p);
+        processes.add(p);
+        processes.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        groupUtilization.putIfAbsent(p.getGroupId(), 1);
+        for(int groupId : p.getGroupPath()) {
+            groupUtilization.putIfAbsent(groupId, 1);
+        }
+        processUtilization.put(p.getId(), 0);
+        initialPriority.put(p.getId(), p.getProcessPriority());
+    }
+
+    private void setShare(int groupId, double share) {
+        scheduler.setGroupShare(groupId, share);
+        groupShares.put(groupId, share);
+    }
+
+    private void charge(ScheduledProcess p) {
+        scheduler.updateProcessUtilization(p);
+        count(p, 1);
+    }
+
+    /**
+     * Charges a slice of cycles at once, which the scan counts one by one.
+     */
+    private void charge(ScheduledProcess p, int cycles) {
+        scheduler.updateProcessUtilization(p, cycles);
+        count(p, cycles);
+    }
+
+    private void count(ScheduledProcess p, int cycles) {
+        processUtilization.merge(p.getId(), cycles, Integer::sum);
+        groupUtilization.merge(p.getGroupId(), cycles, Integer::sum);
+        for(int groupId : p.getGroupPath()) {
+            groupUtilization.merge(groupId, cycles, Integer::sum);
+        }
+    }
+
+    /**
+     * @return The share term of one group in a process's priority.
+     */
+    private int groupTerm(int groupId) {
+        int gcpu = (groupUtilization.get(groupId) - 1) / 2;
+        double share = groupShares.getOrDefault(groupId, SchedulerProcessConfiguration.DEFAULT_GROUP_SHARE);
+        return (int) (gcpu / (4 * share));
+    }
+
+    private void setDecayInterval(int decayInterval) {
+        scheduler.setDecayInterval(decayInterval);
+        this.decayInterval = decayInterval;
+    }
+
+    private void tick() {
+        scheduler.updateBlockedProcesses();
+
+        if(decayInterval > 0 && ++clock % decayInterval == 0) {
+            processUtilization.replaceAll((id, utilization) -> utilization / 2);
+            groupUtilization.replaceAll((id, utilization) -> utilization / 2);
+        }
+    }
+
+    /**
+     * The scan the scheduler used to do: the first ready process, in ID
+     * order, with the smallest priority. Weights are fractions added to
+     * whole numbers, so the process's own term is its priority before it
+     * ran plus its share of its utilization. Every group on the process's
+     * path adds its own term.
+     */
+    private ScheduledProcess scan() {
+        ScheduledProcess min = null;
+        int minPriority = 0;
+
+        for(ScheduledProcess p : processes) {
+            if(p.isBlocked()) continue;
+
+            int cpu = (processUtilization.get(p.getId()) - 1) / 2;
+            int priority = initialPriority.get(p.getId()) + cpu / 2 + groupTerm(p.getGroupId());
+            for(int groupId : p.getGroupPath()) {
+                priority += groupTerm(groupId);
+            }
+            if(min == null || priority < minPriority) {
+                min = p;
+                minPriority = priority;
+            }
+        }
+
+        return min;
+    }
+
+    @Test
+    void noProcesses() {
+        assertNull(scheduler.getNextProcess());
+        assertFalse(scheduler.hasProcesses());
+    }
+
+    @Test
+    void tiesGoToTheSmallestId() {
+        for(int id = 9; id >= 0; id--) {
+            add(new ScheduledProcess(id, id % 2, 0, 0, 0.5, 60));
+        }
+        assertEquals(0, scheduler.getNextProcess().getId());
+
+        // charging process 0 puts its group behind the other, and charging
+        // process 1 as much leaves the smallest IDs of both groups tied
+        for(int i = 0; i < 5; i++) {
+            charge(processes.get(0));
+        }
+        assertEquals(1, scheduler.getNextProcess().getId());
+
+        for(int i = 0; i < 5; i++) {
+            charge(processes.get(1));
+        }
+        assertEquals(2, scheduler.getNextProcess().getId());
+        assertSame(scan(), scheduler.getNextProcess());
+    }
+
+    @Test
+    void blockedProcessesWakeWhenTheirDelayIsUp() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        ScheduledProcess c = new ScheduledProcess(2, 1, 0, 0, 0.5, 60);
+        add(a);
+        add(b);
+        add(c);
+
+        scheduler.blockProcess(a, 3);
+        scheduler.blockProcess(b, 1);
+        scheduler.blockProcess(c, 0);
+        assertSame(c, scheduler.getNextProcess());
+
+        scheduler.removeProcess(c);
+        processes.remove(c);
+        assertNull(scheduler.getNextProcess());
+
+        scheduler.updateBlockedProcesses();
+        assertSame(b, scheduler.getNextProcess());
+
+        scheduler.updateBlockedProcesses();
+        assertTrue(a.isBlocked());
+        scheduler.updateBlockedProcesses();
+        assertFalse(a.isBlocked());
+        assertSame(a, scheduler.getNextProcess());
+
+        // a process removed while blocked never wakes
+        scheduler.blockProcess(b, 1);
+        scheduler.removeProcess(b);
+        processes.remove(b);
+        scheduler.updateBlockedProcesses();
+        assertFalse(b.isBlocked());
+        assertSame(a, scheduler.getNextProcess());
+    }
+
+    @Test
+    void skippingCyclesWakesEveryProcessDue() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        add(a);
+        add(b);
+        scheduler.blockProcess(a, 5);
+        scheduler.blockProcess(b, 10);
+
+        scheduler.advanceClock(7);
+        assertFalse(a.isBlocked());
+        assertTrue(b.isBlocked());
+
+        scheduler.advanceClock(3);
+        assertFalse(b.isBlocked());
+        assertSame(a, scheduler.getNextProcess());
+    }
+
+    @Test
+    void groupUtilizationIsSharedBetweenSchedulers() {
+        Map<Integer, SharedUtilization> shared = new ConcurrentHashMap<>();
+        FairShareScheduler first = new FairShareScheduler(shared);
+        FairShareScheduler second = new FairShareScheduler(shared);
+
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 2, 0, 0, 0.5, 60);
+        ScheduledProcess c = new ScheduledProcess(2, 1, 0, 0, 0.5, 60);
+        first.addProcess(a);
+        first.addProcess(b);
+        second.addProcess(c);
+        assertSame(a, first.getNextProcess());
+
+        // group 1 running on the second CPU counts against it on the first
+        for(int i = 0; i < 6; i++) {
+            second.updateProcessUtilization(c);
+        }
+        assertSame(b, first.getNextProcess());
+    }
+
+    @Test
+    void takeReadyProcessHandsOverALeaf() {
+        for(int id = 0; id < 5; id++) {
+            add(new ScheduledProcess(id, 1, 0, 0, 0.5, 60));
+        }
+        assertEquals(5, scheduler.getReadyCount());
+
+        ScheduledProcess taken = scheduler.takeReadyProcess();
+        processes.remove(taken);
+        assertNotEquals(0, taken.getId());
+        assertEquals(4, scheduler.getReadyCount());
+
+        while(scheduler.getReadyCount() > 0) {
+            assertNotSame(taken, scheduler.takeReadyProcess());
+        }
+        assertNull(scheduler.takeReadyProcess());
+        assertFalse(scheduler.hasProcesses());
+    }
+
+    @Test
+    void aSmallerShareCountsTheGroupMore() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 2, 0, 0, 0.5, 60);
+        add(a);
+        add(b);
+        setShare(1, 0.125);
+
+        // at the default share two cycles would leave the groups tied, and
+        // process 0 would keep the CPU
+        charge(a);
+        charge(a);
+        assertSame(b, scheduler.getNextProcess());
+
+        charge(b);
+        charge(b);
+        assertSame(b, scheduler.getNextProcess());
+        assertSame(scan(), scheduler.getNextProcess());
+    }
+
+    @Test
+    void outrankedOnceAnotherProcessWouldBePicked() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 2, 0, 0, 0.5, 60);
+        add(a);
+        add(b);
+
+        assertSame(a, scheduler.getNextProcess());
+        for(int i = 0; i < 3; i++) {
+            charge(a);
+        }
+        assertFalse(scheduler.isOutranked(a));
+
+        // the group term grows first
+        charge(a);
+        assertTrue(scheduler.isOutranked(a));
+        assertSame(b, scheduler.getNextProcess());
+    }
+
+    @Test
+    void picksWhatTheScanPicks() {
+        runAgainstTheScan(new Random(3), FLAT);
+    }
+
+    /**
+     * The scheduler decays lazily, the scan eagerly at every interval.
+     */
+    @Test
+    void picksWhatTheScanPicksWithDecay() {
+        setDecayInterval(37);
+        runAgainstTheScan(new Random(4), FLAT);
+    }
+
+    /**
+     * Processes both in groups that have groups in them and in the innermost
+     * ones, up to four levels deep.
+     */
+    @Test
+    void picksWhatTheScanPicksWithNestedGroups() {
+        setShare(4, 0.3);
+        setShare(6, 0.05);
+        runAgainstTheScan(new Random(5), NESTED);
+    }
+
+    @Test
+    void picksWhatTheScanPicksWithNestedGroupsAndDecay() {
+        setDecayInterval(53);
+        setShare(5, 0.7);
+        runAgainstTheScan(new Random(6), NESTED);
+    }
+
+    /**
+     * @param paths The path to each group, by ID, which processes are placed
+     *              in at random.
+     */
+    private void runAgainstTheScan(Random random, int[][] paths) {
+        setShare(1, 0.2);
+        for(int id = 0; id < 60; id++) {
+            int groupId = random.nextInt(paths.length);
+            ScheduledProcess p = new ScheduledProcess(id, groupId, 0, 0, random.nextDouble(), 55 + random.nextInt(10));
+            p.setGroupPath(paths[groupId]);
+            add(p);
+            if(id == 30) {
+                setShare(3, 0.9);
+            }
+        }
+
+        for(int step = 0; step < 20000 && !processes.isEmpty(); step++) {
+            ScheduledProcess next = scheduler.getNextProcess();
+            assertSame(scan(), next, "step " + step);
+
+            if(next != null) {
+                charge(next, 1 + random.nextInt(8));
+            }
+
+            // charge another process now and then. Only running processes
+            // are charged for real, and blocked ones only catch up with
+            // decay when they wake.
+            if(random.nextInt(4) == 0) {
+                ScheduledProcess p = processes.get(random.nextInt(processes.size()));
+                if(decayInterval == 0 || !p.isBlocked()) {
+                    charge(p);
+                }
+            }
+
+            int action = random.nextInt(100);
+            if(next != null && action < 10) {
+                scheduler.blockProcess(next, 1 + random.nextInt(20));
+            } else if(next != null && action < 11) {
+                scheduler.removeProcess(next);
+                processes.remove(next);
+            }
+
+            tick();
+        }
+    }
+
+    /**
+     * Dispatches, charges, blocks and wakes processes until the scheduler's
+     * tables have grown to their steady size, then checks that doing the
+     * same again allocates nothing. IDs are kept out of the range of cached
+     * Integer boxes, so boxing would show.
+     */
+    @Test
+    void steadyStateDispatchAllocatesNothing() {
+        FairShareScheduler shared = new FairShareScheduler(new ConcurrentHashMap<>());
+        for(FairShareScheduler s : new FairShareScheduler[] { scheduler, shared }) {
+            for(int id = 1000; id < 1200; id++) {
+                s.addProcess(new ScheduledProcess(id, 500 + id % 5, 0, 0, 0.5, 60));
+            }
+
+            dispatch(s, 200_000);
+            long before = allocatedBytes();
+            long overhead = allocatedBytes() - before;
+            before = allocatedBytes();
+            dispatch(s, 200_000);
+            assertEquals(overhead, allocatedBytes() - before);
+        }
+    }
+
+    private static void dispatch(FairShareScheduler scheduler, int steps) {
+        for(int step = 0; step < steps; step++) {
+            ScheduledProcess p = scheduler.getNextProcess();
+            if(p != null) {
+                scheduler.updateProcessUtilization(p);
+                if(step % 7 == 0) {
+                    scheduler.blockProcess(p, 3 + step % 11);
+                }
+            }
+            scheduler.advanceClock(1);
+        }
+    }
+
+    /**
+     * Asking costs a few hundred bytes itself, so compare against an empty
+     * measurement rather than zero.
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IndexedHeapTest {
+    static class Item implements IndexedHeap.Entry {
+        int key;
+        int heapIndex = -1;
+
+        Item(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getHeapIndex() {
+            return heapIndex;
+        }
+
+        @Override
+        public void setHeapIndex(int heapIndex) {
+            this.heapIndex = heapIndex;
+        }
+    }
+
+    private static IndexedHeap<Item> newHeap() {
+        return new IndexedHeap<>(Comparator.comparingInt(item -> item.key));
+    }
+
+    private static List<Integer> drain(IndexedHeap<Item> heap) {
+        List<Integer> keys = new ArrayList<>();
+        while(!heap.isEmpty()) {
+            Item item = heap.peek();
+            heap.remove(item);
+            keys.add(item.key);
+        }
+        return keys;
+    }
+
+    @Test
+    void emptyHeap() {
+        IndexedHeap<Item> heap = newHeap();
+
+        assertTrue(heap.isEmpty());
+        assertNull(heap.peek());
+        assertFalse(heap.contains(new Item(1)));
+    }
+
+    @Test
+    void drainsInOrderPastTheInitialCapacity() {
+        IndexedHeap<Item> heap = newHeap();
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(1);
+
+        for(int i = 0; i < 100; i++) {
+            int key = random.nextInt(50);
+            heap.add(new Item(key));
+            expected.add(key);
+        }
+        expected.sort(null);
+
+        assertEquals(100, heap.size());
+        assertEquals(expected, drain(heap));
+    }
+
+    @Test
+    void removeFromTheMiddle() {
+        IndexedHeap<Item> heap = newHeap();
+        Item[] items = new Item[10];
+        for(int i = 0; i < items.length; i++) {
+            items[i] = new Item(i);
+            heap.add(items[i]);
+        }
+
+        heap.remove(items[4]);
+        heap.remove(items[9]);
+        heap.remove(items[0]);
+
+        assertFalse(heap.contains(items[4]));
+        assertEquals(-1, items[4].getHeapIndex());
+        assertTrue(heap.contains(items[5]));
+        assertEquals(List.of(1, 2, 3, 5, 6, 7, 8), drain(heap));
+    }
+
+    @Test
+    void updateMovesAnEntryBothWays() {
+        IndexedHeap<Item> heap = newHeap();
+        Item[] items = new Item[8];
+        for(int i = 0; i < items.length; i++) {
+            items[i] = new Item(i * 10);
+            heap.add(items[i]);
+        }
+
+        items[0].key = 75;
+        heap.update(items[0]);
+        items[7].key = 5;
+        heap.update(items[7]);
+
+        assertSame(items[7], heap.peek());
+        assertEquals(List.of(5, 10, 20, 30, 40, 50, 60, 75), drain(heap));
+    }
+
+    @Test
+    void anEntryInAnotherHeapIsNotContained() {
+        IndexedHeap<Item> heap = newHeap();
+        IndexedHeap<Item> other = newHeap();
+        Item a = new Item(1);
+        Item b = new Item(2);
+
+        heap.add(a);
+        other.add(b);
+
+        // both sit in slot 0 of their own heap
+        assertTrue(heap.contains(a));
+        assertFalse(heap.contains(b));
+    }
+
+    @Test
+    void rebuildAfterManyKeysChange() {
+        IndexedHeap<Item> heap = newHeap();
+        List<Item> items = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            Item item = new Item(i);
+            items.add(item);
+            heap.add(item);
+        }
+
+        for(Item item : items) {
+            item.key = 100 - item.key;
+        }
+        heap.rebuild();
+
+        assertEquals(81, heap.peek().key);
+        assertEquals(20, drain(heap).size());
+    }
+}
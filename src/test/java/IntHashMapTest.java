@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntHashMapTest {
+    @Test
+    void putGetAndReplace() {
+        IntHashMap<String> map = new IntHashMap<>();
+
+        map.put(7, "a");
+        map.put(-3, "b");
+        map.put(7, "c");
+
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(7));
+        assertEquals("b", map.get(-3));
+        assertNull(map.get(8));
+        assertFalse(map.containsKey(8));
+    }
+
+    @Test
+    void growsAndKeepsEveryKey() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        for(int key = 0; key < 1000; key++) {
+            map.put(key, key * 2);
+        }
+
+        assertEquals(1000, map.size());
+        assertTrue(map.capacity() >= 2000);
+        for(int key = 0; key < 1000; key++) {
+            assertEquals(key * 2, map.get(key));
+        }
+    }
+
+    @Test
+    void removeKeepsTheRestOfTheProbeSequenceReachable() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+
+        for(int i = 0; i < 20000; i++) {
+            int key = random.nextInt(200);
+            if(random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for(int key = 0; key < 200; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    void removeAMissingKey() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "a");
+
+        map.remove(2);
+
+        assertEquals(1, map.size());
+        assertEquals("a", map.get(1));
+    }
+
+    @Test
+    void walkTheValuesBySlot() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        for(int key = 1; key <= 10; key++) {
+            map.put(key, key);
+        }
+        map.remove(5);
+
+        int sum = 0;
+        int count = 0;
+        for(int slot = 0; slot < map.capacity(); slot++) {
+            Integer value = map.valueAt(slot);
+            if(value == null) continue;
+
+            sum += value;
+            count++;
+        }
+
+        assertEquals(9, count);
+        assertEquals(50, sum);
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getValueAtQuantile(0.99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int value = 0; value < 64; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(64, histogram.getCount());
+        assertEquals(63, histogram.getMax());
+        assertEquals(31.5, histogram.getMean());
+        assertEquals(0, histogram.getValueAtQuantile(0));
+        assertEquals(31, histogram.getValueAtQuantile(0.5));
+        assertEquals(63, histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    void quantilesAreWithinTheRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        Random random = new Random(7);
+
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for(double quantile : new double[] { 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long value = histogram.getValueAtQuantile(quantile);
+
+            assertTrue(value >= exact, quantile + ": " + value + " < " + exact);
+            assertTrue(value <= exact + exact / 32, quantile + ": " + value + " too far above " + exact);
+        }
+        assertEquals(values[values.length - 1], histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    void extremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtQuantile(1));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    void addMergesCounts() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        for(int i = 1; i <= 60; i++) {
+            a.record(i);
+            b.record(1000 + i);
+        }
+
+        a.add(b);
+
+        assertEquals(120, a.getCount());
+        assertEquals(1060, a.getMax());
+        assertEquals(530.5, a.getMean());
+        assertEquals(60, a.getValueAtQuantile(0.5));
+        assertEquals(1060, a.getValueAtQuantile(1));
+        assertEquals(60, b.getCount());
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LotterySchedulerTest {
+    /**
+     * Draws the ticket it is told to.
+     */
+    static class FixedRandom extends SplitMixRandom {
+        long ticket;
+        long bound;
+
+        @Override
+        public long nextLong(long bound) {
+            this.bound = bound;
+            return ticket;
+        }
+    }
+
+    private static ScheduledProcess process(int id, int tickets) {
+        ScheduledProcess p = new ScheduledProcess(id, 1, 0, 0, 0.5, 60);
+        p.setTickets(tickets);
+        return p;
+    }
+
+    /**
+     * Draws every ticket and checks it goes to the process holding it, with
+     * the tickets counted in slot order.
+     */
+    private static void assertEveryTicketWins(LotteryScheduler scheduler, FixedRandom rng, List<ScheduledProcess> ready) {
+        ScheduledProcess[] bySlot = new ScheduledProcess[ready.size()];
+        long total = 0;
+        for(ScheduledProcess p : ready) {
+            bySlot[p.getSlot()] = p;
+            total += p.getTickets();
+        }
+
+        long ticket = 0;
+        for(ScheduledProcess p : bySlot) {
+            for(int i = 0; i < p.getTickets(); i++, ticket++) {
+                rng.ticket = ticket;
+                assertSame(p, scheduler.selectNext(), "ticket " + ticket);
+            }
+        }
+        assertEquals(total, rng.bound);
+    }
+
+    @Test
+    void noReadyProcess() {
+        LotteryScheduler scheduler = new LotteryScheduler(new FixedRandom());
+
+        assertNull(scheduler.selectNext());
+        assertFalse(scheduler.dequeue(process(0, 5)));
+    }
+
+    @Test
+    void eachTicketGoesToItsHolderAsTheTreeGrows() {
+        FixedRandom rng = new FixedRandom();
+        LotteryScheduler scheduler = new LotteryScheduler(rng);
+        List<ScheduledProcess> ready = new ArrayList<>();
+
+        for(int id = 0; id < 40; id++) {
+            ScheduledProcess p = process(id, id % 7 + 1);
+            scheduler.enqueue(p);
+            ready.add(p);
+
+            assertEveryTicketWins(scheduler, rng, ready);
+        }
+    }
+
+    @Test
+    void removalMovesTheLastProcessIntoTheHole() {
+        FixedRandom rng = new FixedRandom();
+        LotteryScheduler scheduler = new LotteryScheduler(rng);
+        List<ScheduledProcess> ready = new ArrayList<>();
+
+        for(int id = 0; id < 20; id++) {
+            ScheduledProcess p = process(id, 3 * id + 1);
+            scheduler.enqueue(p);
+            ready.add(p);
+        }
+
+        ScheduledProcess first = ready.get(0);
+        for(int id : new int[] { 5, 0, 19, 12, 7 }) {
+            ScheduledProcess p = ready.get(id);
+            assertTrue(scheduler.dequeue(p));
+            assertFalse(scheduler.dequeue(p));
+            assertEquals(-1, p.getSlot());
+            ready.set(id, null);
+
+            List<ScheduledProcess> remaining = new ArrayList<>(ready);
+            remaining.removeIf(q -> q == null);
+            assertEveryTicketWins(scheduler, rng, remaining);
+        }
+
+        // processes put back go into the last slots
+        scheduler.enqueue(first);
+        ScheduledProcess added = process(20, 50);
+        scheduler.enqueue(added);
+        ready.set(0, first);
+        ready.add(added);
+        ready.removeIf(q -> q == null);
+        assertEquals(15, first.getSlot());
+        assertEquals(16, added.getSlot());
+        assertEveryTicketWins(scheduler, rng, ready);
+    }
+
+    @Test
+    void winsInProportionToTickets() {
+        LotteryScheduler scheduler = new LotteryScheduler(new SplitMixRandom(11));
+        ScheduledProcess small = process(0, 1000);
+        ScheduledProcess large = process(1, 3000);
+        scheduler.enqueue(small);
+        scheduler.enqueue(large);
+
+        int smallWins = 0;
+        for(int draw = 0; draw < 40000; draw++) {
+            if(scheduler.selectNext() == small) {
+                smallWins++;
+            }
+        }
+
+        assertEquals(0.25, smallWins / 40000.0, 0.01);
+    }
+}
@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MultilevelFeedbackSchedulerTest {
+    private static final int QUANTUM = 40;
+
+    private MultilevelFeedbackScheduler scheduler = new MultilevelFeedbackScheduler(QUANTUM);
+
+    /**
+     * Dispatches a process and runs it for a number of cycles.
+     */
+    private ScheduledProcess run(int cycles) {
+        ScheduledProcess p = scheduler.getNextProcess();
+        for(int i = 0; i < cycles && p != null; i++) {
+            scheduler.updateProcessUtilization(p);
+            scheduler.updateBlockedProcesses();
+        }
+
+        return p;
+    }
+
+    @Test
+    void allotmentsDoubleWithEveryLevel() {
+        assertEquals(QUANTUM, scheduler.allotment(0));
+        assertEquals(4L * QUANTUM, scheduler.allotment(2));
+    }
+
+    @Test
+    void aProcessSinksOnceItHasUsedItsAllotment() {
+        ScheduledProcess p = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(p);
+
+        run(QUANTUM - 1);
+        assertEquals(0, p.getLevel());
+        run(1);
+        run(0);
+        assertEquals(1, p.getLevel());
+
+        // two quanta on level 1, in two turns
+        run(QUANTUM);
+        run(QUANTUM);
+        run(0);
+        assertEquals(2, p.getLevel());
+
+        for(int i = 0; i < 400; i++) {
+            run(QUANTUM);
+        }
+        assertEquals(MultilevelFeedbackScheduler.LEVELS - 1, p.getLevel());
+    }
+
+    @Test
+    void aLevelTakesTurnsInOrder() {
+        for(int id = 0; id < 3; id++) {
+            scheduler.addProcess(new ScheduledProcess(id, 1, 0, 0, 0.5, 60));
+        }
+
+        int[] order = new int[6];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = run(10).getId();
+        }
+        assertArrayEquals(new int[] { 0, 1, 2, 0, 1, 2 }, order);
+    }
+
+    /**
+     * A process that keeps blocking before its allotment is used up stays
+     * above one that computes, and runs first whenever it is ready.
+     */
+    @Test
+    void anIoBoundProcessStaysOnTop() {
+        ScheduledProcess ioBound = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess cpuBound = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(ioBound);
+        scheduler.addProcess(cpuBound);
+
+        for(int i = 0; i < 50; i++) {
+            if(ioBound.isBlocked()) {
+                assertSame(cpuBound, run(QUANTUM));
+            } else {
+                assertSame(ioBound, run(1));
+                scheduler.blockProcess(ioBound, 2 * QUANTUM);
+            }
+        }
+
+        assertEquals(0, ioBound.getLevel());
+        assertTrue(cpuBound.getLevel() > 2);
+    }
+
+    @Test
+    void theDecayIntervalBoostsEveryProcess() {
+        scheduler.setDecayInterval(50 * QUANTUM);
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(a);
+        scheduler.addProcess(b);
+        scheduler.blockProcess(b, 100 * QUANTUM);
+
+        for(int i = 0; i < 49; i++) {
+            run(QUANTUM);
+        }
+        assertTrue(a.getLevel() > 3);
+
+        run(QUANTUM);
+        assertEquals(0, scheduler.getLevel(a));
+        assertEquals(0, a.getLevelCycles());
+        assertEquals(0, scheduler.getLevel(b));
+        assertSame(a, run(0));
+    }
+
+    /**
+     * The boost appends the lower levels to the highest, so the processes
+     * that were higher still run first, and each gets a whole allotment of
+     * the highest level again.
+     */
+    @Test
+    void theBoostKeepsTheOrderOfTheLevels() {
+        scheduler.setDecayInterval(1000 * QUANTUM);
+        ScheduledProcess[] p = new ScheduledProcess[4];
+        for(int id = 0; id < p.length; id++) {
+            p[id] = new ScheduledProcess(id, 1, 0, 0, 0.5, 60);
+        }
+
+        // 0 sinks to level 2 and 1 to level 1, while 2 and 3 have not run
+        scheduler.addProcess(p[0]);
+        run(QUANTUM);
+        run(2 * QUANTUM);
+        scheduler.addProcess(p[1]);
+        run(QUANTUM);
+        scheduler.addProcess(p[2]);
+        scheduler.addProcess(p[3]);
+        run(0);
+        assertEquals(2, scheduler.getLevel(p[0]));
+        assertEquals(1, scheduler.getLevel(p[1]));
+
+        long decay = scheduler.getNextDecay();
+        while(scheduler.getNextDecay() == decay) {
+            scheduler.updateBlockedProcesses();
+        }
+
+        // 2 was running, and takes its turn behind the others
+        int[] order = new int[p.length];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = run(QUANTUM - 1).getId();
+            assertEquals(0, scheduler.getLevel(p[order[i]]));
+        }
+        assertArrayEquals(new int[] { 3, 1, 0, 2 }, order);
+    }
+
+    @Test
+    void outrankedByTheOthersOnItsLevelOrAbove() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(a);
+
+        // alone, it keeps the CPU even as it moves down
+        assertSame(a, run(QUANTUM + 5));
+        assertFalse(scheduler.isOutranked(a));
+
+        // b has not run yet, so it is above
+        scheduler.addProcess(b);
+        assertTrue(scheduler.isOutranked(a));
+        assertSame(b, run(QUANTUM / 2));
+        assertFalse(scheduler.isOutranked(b));
+
+        // once b has used its allotment, it would join a on level 1
+        run(QUANTUM / 2 - 1);
+        assertFalse(scheduler.isOutranked(b));
+        scheduler.updateProcessUtilization(b);
+        assertTrue(scheduler.isOutranked(b));
+    }
+}
@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class PagedMemoryTest {
+    private static ProgramCache.Image image(int size) {
+        ProgramCache.Image image = new ProgramCache.Image();
+        image.size  = size;
+        image.code  = new int[size];
+        image.residentFrames = new int[PagedMemory.pageCount(size)];
+        Arrays.fill(image.residentFrames, -1);
+        return image;
+    }
+
+    private static ScheduledProcess process(int id, ProgramCache.Image image) {
+        ScheduledProcess p = new ScheduledProcess(id, 1, 0, image.size, 0.5, 60);
+        p.setImage(image);
+        return p;
+    }
+
+    @Test
+    void pageCountRoundsUp() {
+        assertEquals(0, PagedMemory.pageCount(0));
+        assertEquals(1, PagedMemory.pageCount(1));
+        assertEquals(1, PagedMemory.pageCount(PagedMemory.PAGE_SIZE));
+        assertEquals(2, PagedMemory.pageCount(PagedMemory.PAGE_SIZE + 1));
+    }
+
+    @Test
+    void aPageIsCopiedInOnceThenHit() {
+        PagedMemory memory = new PagedMemory(4 * PagedMemory.PAGE_SIZE);
+        ScheduledProcess p = process(0, image(300));
+
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(p, 1));
+        assertEquals(PagedMemory.HIT, memory.touch(p, 1));
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(p, 0));
+
+        assertEquals(2, memory.getMajorFaults());
+        assertEquals(0, memory.getMinorFaults());
+        assertEquals(2, memory.getFramesUsed());
+        assertEquals(2, p.getMajorFaults());
+    }
+
+    @Test
+    void processesRunningTheSameImageShareItsFrames() {
+        PagedMemory memory = new PagedMemory(4 * PagedMemory.PAGE_SIZE);
+        ProgramCache.Image image = image(100);
+        ScheduledProcess a = process(0, image);
+        ScheduledProcess b = process(1, image);
+
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(a, 0));
+        assertEquals(PagedMemory.MINOR_FAULT, memory.touch(b, 0));
+        assertEquals(PagedMemory.HIT, memory.touch(b, 0));
+
+        assertEquals(1, memory.getFramesUsed());
+        assertEquals(1, b.getMinorFaults());
+        assertEquals(0, b.getMajorFaults());
+    }
+
+    /**
+     * With two frames and three pages, the clock passes over the referenced
+     * frames once and then reclaims them in turn. A page table entry left
+     * pointing at a reclaimed frame counts as not resident.
+     */
+    @Test
+    void theClockReclaimsFramesWhenMemoryIsFull() {
+        PagedMemory memory = new PagedMemory(2 * PagedMemory.PAGE_SIZE + 10);
+        ScheduledProcess p = process(0, image(3 * PagedMemory.PAGE_SIZE));
+        assertEquals(2, memory.getFrameCount());
+
+        memory.touch(p, 0);
+        memory.touch(p, 1);
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(p, 2));
+        assertEquals(1, memory.getEvictions());
+
+        // page 0 was reclaimed for page 2, and page 1 goes next
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(p, 0));
+        assertEquals(PagedMemory.HIT, memory.touch(p, 2));
+        assertEquals(PagedMemory.MAJOR_FAULT, memory.touch(p, 1));
+
+        assertEquals(3, memory.getEvictions());
+        assertEquals(5, memory.getMajorFaults());
+        assertEquals(2, memory.getFramesUsed());
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProgramCacheTest {
+    @TempDir
+    File dir;
+
+    private ProgramCache cache = new ProgramCache();
+
+    private File program(String name, int... code) throws IOException {
+        StringBuilder text = new StringBuilder().append(code.length).append('\n');
+        for(int word : code) {
+            text.append(word).append('\n');
+        }
+
+        File file = new File(dir, name);
+        Files.write(file.toPath(), text.toString().getBytes());
+        return file;
+    }
+
+    @Test
+    void aFileIsLoadedOnce() throws IOException {
+        File file = program("a.txt", 1, 2, 3);
+
+        ProgramCache.Image image = cache.load(file);
+        assertSame(image, cache.load(new File(dir, "./a.txt")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void filesWithTheSameContentsShareAnImage() throws IOException {
+        ProgramCache.Image a = cache.load(program("a.txt", 1, 2, 3));
+        ProgramCache.Image b = cache.load(program("b.txt", 1, 2, 3));
+
+        assertSame(a, b);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void distinctProgramsGetImagesOfTheirOwn() throws IOException {
+        ProgramCache.Image a = cache.load(program("a.txt", 1, 2, 3));
+        ProgramCache.Image b = cache.load(program("b.txt", 1, 3));
+
+        assertNotSame(a, b);
+        assertArrayEquals(new int[] { 1, 3 }, b.code);
+        assertEquals(2, b.size);
+        assertArrayEquals(new int[] { -1 }, b.residentFrames);
+        assertEquals(2, cache.size());
+    }
+}
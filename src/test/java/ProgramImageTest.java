@@ -0,0 +1,122 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProgramImageTest {
+    private static final int[] CODE = { 3, 0, 255, 17, 42, 128, 1 };
+
+    @TempDir
+    File dir;
+
+    private static byte[] binary(int[] code, int entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProgramImage.writeBinary(out, code, entry);
+        return out.toByteArray();
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private void assertRejected(byte[] bytes, String message) throws IOException {
+        File file = write("bad.pexe", bytes);
+
+        IOException e = assertThrows(IOException.class, () -> ProgramImage.load(file));
+        assertTrue(e.getMessage().endsWith(message), e.getMessage());
+    }
+
+    @Test
+    void binaryRoundTrip() throws IOException {
+        ProgramImage image = ProgramImage.load(write("p.pexe", binary(CODE, 2)));
+
+        assertArrayEquals(CODE, image.getCode());
+        assertEquals(CODE.length, image.getSize());
+        assertEquals(2, image.getEntry());
+    }
+
+    @Test
+    void textFormat() throws IOException {
+        ProgramImage image = ProgramImage.load(write("p.pexe", "3\n7\n0\n255\n".getBytes()));
+
+        assertArrayEquals(new int[] { 7, 0, 255 }, image.getCode());
+        assertEquals(0, image.getEntry());
+    }
+
+    @Test
+    void aTextFileShorterThanTheMagicLoads() throws IOException {
+        ProgramImage image = ProgramImage.load(write("p.pexe", "1\n3".getBytes()));
+
+        assertArrayEquals(new int[] { 3 }, image.getCode());
+    }
+
+    @Test
+    void theProgramIsDecodedAsItIsLoaded() throws IOException {
+        ProgramImage image = ProgramImage.load(write("p.pexe", binary(CODE, 2)));
+        DecodedProgram expected = new DecodedProgram(CODE, 0, CODE.length);
+
+        assertArrayEquals(expected.getCode(), image.getProgram().getCode());
+        assertArrayEquals(expected.getDestinations(), image.getProgram().getDestinations());
+        assertSame(image.getCode(), image.getProgram().getImage());
+    }
+
+    @Test
+    void corruptedCodeFailsTheChecksum() throws IOException {
+        byte[] bytes = binary(CODE, 0);
+        bytes[bytes.length - 1] ^= 0x10;
+
+        assertRejected(bytes, "checksum mismatch");
+    }
+
+    @Test
+    void corruptedChecksumIsRejected() throws IOException {
+        byte[] bytes = binary(CODE, 0);
+        bytes[16] ^= 0x01;
+
+        assertRejected(bytes, "checksum mismatch");
+    }
+
+    @Test
+    void unsupportedVersion() throws IOException {
+        byte[] bytes = binary(CODE, 0);
+        ByteBuffer.wrap(bytes).putInt(4, ProgramImage.VERSION + 1);
+
+        assertRejected(bytes, "unsupported version " + (ProgramImage.VERSION + 1));
+    }
+
+    @Test
+    void truncatedHeader() throws IOException {
+        byte[] bytes = new byte[8];
+        ByteBuffer.wrap(bytes).putInt(ProgramImage.MAGIC).putInt(ProgramImage.VERSION);
+
+        assertRejected(bytes, "truncated header");
+    }
+
+    @Test
+    void sizeDoesNotMatchTheFile() throws IOException {
+        byte[] bytes = binary(CODE, 0);
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+        assertRejected(truncated, "size " + CODE.length + " does not match the file");
+    }
+
+    @Test
+    void entryOutsideTheProgram() throws IOException {
+        assertRejected(binary(CODE, CODE.length), "entry point " + CODE.length + " is outside the program");
+    }
+
+    @Test
+    void writeRejectsValuesThatAreNotBytes() {
+        assertThrows(IllegalArgumentException.class, () -> binary(new int[] { 1, 256 }, 0));
+        assertThrows(IllegalArgumentException.class, () -> binary(new int[] { -1 }, 0));
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ReadyTreeTest {
+    private ReadyTree tree = new ReadyTree(60);
+
+    /**
+     * @return A process that has caught up with an epoch at a utilization.
+     */
+    private static ScheduledProcess process(int id, int utilization, int epoch) {
+        ScheduledProcess p = new ScheduledProcess(id, 1, 0, 0, 0.5, 60);
+        p.incrementUtilization(utilization);
+        p.setEpoch(epoch);
+        return p;
+    }
+
+    /**
+     * The first process by priority as of the epoch, then by ID.
+     */
+    private static ScheduledProcess scan(List<ScheduledProcess> processes, int epoch) {
+        ScheduledProcess min = null;
+        for(ScheduledProcess p : processes) {
+            if(min == null || priority(p, epoch) < priority(min, epoch)
+                    || priority(p, epoch) == priority(min, epoch) && p.getId() < min.getId()) {
+                min = p;
+            }
+        }
+
+        return min;
+    }
+
+    private static int priority(ScheduledProcess p, int epoch) {
+        int utilization = (int) ScheduledProcess.decay(p.getUtilization(), epoch - p.getEpoch());
+        return p.getStartingPriority() + ScheduledProcess.utilizationPriority(utilization);
+    }
+
+    @Test
+    void empty() {
+        assertNull(tree.getBest(0));
+        assertNull(tree.last());
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    void tiesGoToTheSmallestId() {
+        // utilization 5 to 8 all give the same priority
+        tree.add(process(3, 5, 0));
+        tree.add(process(2, 8, 0));
+        tree.add(process(1, 9, 0));
+
+        assertEquals(2, tree.getBest(0).getId());
+        assertEquals(61, tree.getBestPriority());
+        assertEquals(3, tree.last().getId());
+    }
+
+    /**
+     * A decay can make processes tie that did not, which changes the best
+     * without the tree being touched.
+     */
+    @Test
+    void aDecayIsSeenWithoutTouchingTheTree() {
+        tree.add(process(1, 16, 0));
+        tree.add(process(2, 12, 0));
+
+        assertEquals(2, tree.getBest(0).getId());
+        assertEquals(1, tree.getBest(1).getId());
+        assertEquals(61, tree.getBestPriority());
+    }
+
+    @Test
+    void processesLeaveTheirTree() {
+        ScheduledProcess a = process(1, 0, 0);
+        ScheduledProcess b = process(2, 0, 0);
+        tree.add(a);
+        tree.add(b);
+        assertSame(tree, ReadyTree.of(a));
+
+        tree.remove(a);
+        assertNull(ReadyTree.of(a));
+        assertSame(b, tree.getBest(0));
+
+        tree.add(a);
+        assertSame(a, tree.getBest(0));
+        assertEquals(2, tree.size());
+    }
+
+    @Test
+    void picksWhatTheScanPicks() {
+        Random random = new Random(7);
+        List<ScheduledProcess> processes = new ArrayList<>();
+        int epoch = 0;
+
+        for(int step = 0; step < 50000; step++) {
+            int op = random.nextInt(10);
+
+            if(op < 5 || processes.isEmpty()) {
+                ScheduledProcess p = process(step, random.nextInt(200), epoch - random.nextInt(Math.min(epoch, 6) + 1));
+                tree.add(p);
+                processes.add(p);
+            } else if(op < 7) {
+                tree.remove(processes.remove(random.nextInt(processes.size())));
+            } else if(op < 9) {
+                // charge a process, catching it up first
+                ScheduledProcess p = processes.get(random.nextInt(processes.size()));
+                p.decayTo(epoch);
+                p.incrementUtilization(random.nextInt(20));
+                tree.update(p);
+            } else {
+                epoch++;
+            }
+
+            ScheduledProcess expected = scan(processes, epoch);
+            assertSame(expected, tree.getBest(epoch));
+            if(expected != null) {
+                assertEquals(priority(expected, epoch), tree.getBestPriority());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Submission from other threads, which every policy inherits from
+ * AbstractScheduler.
+ */
+class SchedulerSubmissionTest {
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 5000;
+
+    private static Scheduler scheduler(String policy) {
+        return Scheduler.create(policy, Sim.CLOCK_PER_TIMER, null, new SplitMixRandom(2));
+    }
+
+    /**
+     * Several producers submit while the dispatching thread keeps picking and
+     * retiring processes. Every process submitted is run exactly once.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = { Scheduler.FAIR_SHARE, Scheduler.STRIDE, Scheduler.LOTTERY, Scheduler.MLFQ })
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void everySubmissionIsAdmittedOnce(String policy) throws InterruptedException {
+        Scheduler scheduler = scheduler(policy);
+        Thread[] producers = new Thread[PRODUCERS];
+
+        for(int t = 0; t < PRODUCERS; t++) {
+            int first = t * PER_PRODUCER;
+            producers[t] = new Thread(() -> {
+                for(int id = first; id < first + PER_PRODUCER; id++) {
+                    scheduler.submitProcess(new ScheduledProcess(id, id % 7, 0, 0, 0.5, 60));
+                }
+            });
+            producers[t].start();
+        }
+
+        BitSet ran = new BitSet();
+        int count = 0;
+        while(count < PRODUCERS * PER_PRODUCER) {
+            ScheduledProcess p = scheduler.getNextProcess();
+            if(p == null) {
+                Thread.yield();
+                continue;
+            }
+
+            assertFalse(ran.get(p.getId()), "process " + p.getId() + " ran twice");
+            ran.set(p.getId());
+            count++;
+
+            scheduler.updateProcessUtilization(p);
+            scheduler.removeProcess(p);
+        }
+
+        for(Thread producer : producers) {
+            producer.join();
+        }
+        assertNull(scheduler.getNextProcess());
+        assertFalse(scheduler.hasProcesses());
+        assertEquals(PRODUCERS * PER_PRODUCER, ran.cardinality());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { Scheduler.FAIR_SHARE, Scheduler.STRIDE, Scheduler.LOTTERY, Scheduler.MLFQ })
+    void aSubmissionIsPendingUntilTheNextPick(String policy) {
+        Scheduler scheduler = scheduler(policy);
+        ScheduledProcess p = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+
+        scheduler.submitProcess(p);
+        assertTrue(scheduler.hasProcesses());
+        assertEquals(0, scheduler.getReadyCount());
+
+        assertSame(p, scheduler.getNextProcess());
+        assertEquals(1, scheduler.getReadyCount());
+        assertSame(p, scheduler.getProcess(0));
+    }
+}
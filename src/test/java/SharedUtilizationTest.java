@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class SharedUtilizationTest {
+    private static SharedUtilization counter(int value) {
+        SharedUtilization counter = new SharedUtilization();
+        counter.add(value - 1);
+        return counter;
+    }
+
+    @Test
+    void startsAtOne() {
+        assertEquals(1, new SharedUtilization().sum());
+    }
+
+    @Test
+    void halvesOnceForEachEpochMissed() {
+        SharedUtilization counter = counter(40);
+
+        counter.decayTo(1);
+        assertEquals(20, counter.sum());
+        counter.decayTo(1);
+        assertEquals(20, counter.sum());
+
+        counter.decayTo(3);
+        assertEquals(5, counter.sum());
+
+        // an earlier epoch, asked for by a CPU whose clock is behind
+        counter.decayTo(2);
+        assertEquals(5, counter.sum());
+    }
+
+    /**
+     * Every CPU asks for the same epoch at once, and the counter is halved
+     * only once. No CPU sees it before it is halved, even if another CPU
+     * was the one to halve it.
+     */
+    @Test
+    void manyThreadsDecayingToOneEpochHalveItOnce() throws InterruptedException {
+        SharedUtilization counter = counter(1 << 20);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[8];
+        long[] seen = new long[threads.length];
+        for(int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch(InterruptedException e) {
+                    return;
+                }
+                counter.decayTo(1);
+                seen[thread] = counter.sum();
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1 << 19, counter.sum());
+        for(long sum : seen) {
+            assertEquals(1 << 19, sum);
+        }
+    }
+
+    @Test
+    void addsAreNotLostToADecay() throws InterruptedException {
+        SharedUtilization counter = counter(1 << 20);
+
+        Thread adder = new Thread(() -> {
+            for(int i = 0; i < 100_000; i++) {
+                counter.add(2);
+            }
+        });
+        adder.start();
+        counter.decayTo(1);
+        adder.join();
+
+        // each add lands either before the halving, and is halved with it,
+        // or after
+        long sum = counter.sum();
+        assertTrue(sum >= (1 << 19) + 100_000 && sum <= (1 << 19) + 200_000, Long.toString(sum));
+    }
+
+    @Test
+    void theCountSaturates() {
+        SharedUtilization counter = counter(Integer.MAX_VALUE);
+        counter.add(10);
+        assertEquals(Integer.MAX_VALUE, counter.sum());
+
+        counter.decayTo(1);
+        assertEquals(Integer.MAX_VALUE / 2, counter.sum());
+    }
+}
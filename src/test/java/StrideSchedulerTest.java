@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class StrideSchedulerTest {
+    private StrideScheduler scheduler = new StrideScheduler();
+
+    /**
+     * Dispatches a process and runs it for a number of cycles.
+     */
+    private ScheduledProcess run(int cycles) {
+        ScheduledProcess p = scheduler.getNextProcess();
+        for(int i = 0; i < cycles && p != null; i++) {
+            scheduler.updateProcessUtilization(p);
+            scheduler.updateBlockedProcesses();
+        }
+
+        return p;
+    }
+
+    @Test
+    void equalTicketsTakeTurnsFromTheSmallestId() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(b);
+        scheduler.addProcess(a);
+        assertEquals(1000, a.getTickets());
+
+        assertSame(a, run(10));
+        assertSame(b, run(10));
+        assertSame(a, run(10));
+        assertSame(b, run(10));
+    }
+
+    @Test
+    void cyclesAreSharedInProportionToTickets() {
+        // half the weight doubles the tickets, and so does twice the share
+        scheduler.setGroupShare(3, 1.0);
+        ScheduledProcess[] processes = {
+            new ScheduledProcess(0, 1, 0, 0, 0.5, 60),
+            new ScheduledProcess(1, 1, 0, 0, 0.25, 60),
+            new ScheduledProcess(2, 3, 0, 0, 0.25, 60),
+        };
+        for(ScheduledProcess p : processes) {
+            scheduler.addProcess(p);
+        }
+        assertEquals(4000, processes[2].getTickets());
+
+        for(int quantum = 0; quantum < 700; quantum++) {
+            run(10);
+        }
+
+        assertEquals(1000, processes[0].getCpuCycles());
+        assertEquals(2000, processes[1].getCpuCycles());
+        assertEquals(4000, processes[2].getCpuCycles());
+    }
+
+    /**
+     * A process that was blocked starts from the smallest pass run so far,
+     * so it cannot make up for the time it was away by holding the CPU.
+     */
+    @Test
+    void timeBlockedIsNotSavedUp() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.5, 60);
+        scheduler.addProcess(a);
+        scheduler.addProcess(b);
+
+        scheduler.blockProcess(a, 500);
+        for(int quantum = 0; quantum < 50; quantum++) {
+            assertSame(b, run(10));
+        }
+        assertFalse(a.isBlocked());
+
+        // level with the last pass picked, it wins the tie and then takes
+        // turns
+        int runs = 0;
+        for(int quantum = 0; quantum < 10; quantum++) {
+            if(run(10) == a) {
+                runs++;
+            }
+        }
+        assertEquals(6, runs);
+    }
+
+    @Test
+    void aProcessTakenAwayIsNotRunAgain() {
+        for(int id = 0; id < 4; id++) {
+            scheduler.addProcess(new ScheduledProcess(id, 1, 0, 0, 0.5, 60));
+        }
+
+        ScheduledProcess taken = scheduler.takeReadyProcess();
+        assertNull(scheduler.getProcess(taken.getId()));
+        for(int quantum = 0; quantum < 12; quantum++) {
+            assertNotSame(taken, run(10));
+        }
+        assertEquals(3, scheduler.getReadyCount());
+    }
+
+    @Test
+    void outrankedOnceItsPassWouldPassAnother() {
+        ScheduledProcess a = new ScheduledProcess(0, 1, 0, 0, 0.5, 60);
+        ScheduledProcess b = new ScheduledProcess(1, 1, 0, 0, 0.25, 60);
+        ScheduledProcess c = new ScheduledProcess(2, 1, 0, 0, 0.125, 60);
+        scheduler.addProcess(a);
+
+        assertSame(a, run(10));
+        assertFalse(scheduler.isOutranked(a));
+
+        // the newcomers start at the smallest pass picked, below a's
+        scheduler.addProcess(b);
+        scheduler.addProcess(c);
+        assertTrue(scheduler.isOutranked(a));
+
+        // b is level with c and wins the tie, until it has run a cycle
+        assertSame(b, scheduler.getNextProcess());
+        assertFalse(scheduler.isOutranked(b));
+        scheduler.updateProcessUtilization(b);
+        assertTrue(scheduler.isOutranked(b));
+
+        // c's stride is half of b's, so c ties b after two cycles and loses
+        assertSame(c, run(1));
+        assertFalse(scheduler.isOutranked(c));
+        scheduler.updateProcessUtilization(c);
+        assertTrue(scheduler.isOutranked(c));
+    }
+}
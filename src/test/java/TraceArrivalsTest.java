@@ -0,0 +1,115 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TraceArrivalsTest {
+    @TempDir
+    File dir;
+
+    private String program;
+    private SchedulerProcessConfiguration config;
+    private Simulation simulation;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File file = new File(dir, "p.pexe");
+        try(OutputStream out = new FileOutputStream(file)) {
+            ProgramImage.writeBinary(out, new int[] { 0 }, 0);
+        }
+        program = file.getPath();
+
+        config = new SchedulerProcessConfiguration();
+        config.setDefaultProcessWeight(0.5);
+        config.setDefaultProcessPriority(60);
+        simulation = new Simulation(config, new SplitMixRandom(1), null);
+    }
+
+    private TraceArrivals open(String... lines) throws IOException {
+        File trace = new File(dir, "trace.txt");
+        Files.write(trace.toPath(), String.join("\n", lines).getBytes());
+        return new TraceArrivals(trace, simulation, config);
+    }
+
+    @Test
+    void admitsEachProcessOnItsArrival() throws IOException {
+        TraceArrivals arrivals = open(
+                "# arrival program group",
+                "",
+                "5 " + program + " 1",
+                "5 " + program + " 2 0.25 40",
+                "9 " + program + " 3");
+
+        assertEquals(5, arrivals.getNextArrival());
+        assertNull(arrivals.poll(4));
+
+        ScheduledProcess first = arrivals.poll(5);
+        assertEquals(5, first.getArrivalCycle());
+        assertEquals(1, first.getGroupId());
+        assertEquals(0.5, first.getWeight());
+
+        ScheduledProcess second = arrivals.poll(5);
+        assertEquals(2, second.getGroupId());
+        assertEquals(0.25, second.getWeight());
+
+        assertNull(arrivals.poll(8));
+        assertEquals(9, arrivals.poll(100).getArrivalCycle());
+        assertTrue(arrivals.isExhausted());
+        assertEquals(Long.MAX_VALUE, arrivals.getNextArrival());
+        assertNull(arrivals.poll(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void skipsProgramsThatFailToLoad() throws IOException {
+        TraceArrivals arrivals = open(
+                "1 " + new File(dir, "missing.pexe").getPath() + " 1",
+                "2 " + program + " 1");
+
+        ScheduledProcess process = arrivals.poll(2);
+        assertEquals(2, process.getArrivalCycle());
+        assertTrue(arrivals.isExhausted());
+    }
+
+    @Test
+    void emptyTrace() throws IOException {
+        assertTrue(open("# nothing").isExhausted());
+    }
+
+    @Test
+    void rejectsArrivalsOutOfOrder() throws IOException {
+        TraceArrivals arrivals = open(
+                "10 " + program + " 1",
+                "9 " + program + " 1");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> arrivals.poll(10));
+        assertTrue(e.getMessage().startsWith("Invalid trace line 2 "), e.getMessage());
+        assertTrue(e.getMessage().endsWith("Arrivals must be in order."), e.getMessage());
+    }
+
+    @Test
+    void rejectsANegativeArrival() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> open("-1 " + program + " 1"));
+        assertTrue(e.getMessage().startsWith("Invalid trace line 1 "), e.getMessage());
+        assertTrue(e.getMessage().endsWith("Arrivals cannot be negative."), e.getMessage());
+    }
+
+    @Test
+    void rejectsTheWrongNumberOfFields() {
+        assertThrows(IllegalArgumentException.class, () -> open("1 " + program));
+        assertThrows(IllegalArgumentException.class, () -> open("1 " + program + " 1 0.5 40 extra"));
+    }
+
+    @Test
+    void rejectsFieldsThatAreNotNumbers() {
+        assertThrows(NumberFormatException.class, () -> open("soon " + program + " 1"));
+        assertThrows(NumberFormatException.class, () -> open("1 " + program + " one"));
+    }
+}